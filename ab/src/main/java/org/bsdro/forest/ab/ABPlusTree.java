@@ -0,0 +1,86 @@
+package org.bsdro.forest.ab;
+
+/**
+ * (a,b)-tree in B+ layout. Every key lives in a leaf, inner nodes only hold copies of keys as separators,
+ * and the leaves are linked left to right so that {@link #scan} streams a range without climbing back up.
+ * Child i of an inner node holds the keys k with {@code keys[i - 1] <= k < keys[i]}.
+ */
+public class ABPlusTree extends SequentialBPlusTree {
+
+    public ABPlusTree(int a, int b) {
+        super(a, b);
+        this.root = newLeaf();
+    }
+
+    ABTreeLeaf newLeaf() {
+        return new ABTreeLeaf(b);
+    }
+
+    public boolean contains(int key) {
+        return findLeaf(key).search(key) >= 0;
+    }
+
+    /**
+     * Cursor over the keys k with {@code from <= k <= to} in ascending order.
+     */
+    public ABTreeCursor scan(int from, int to) {
+        ABTreeLeaf leaf = (ABTreeLeaf) findLeaf(from);
+        int i = leaf.search(from);
+        return new ABTreeCursor(leaf, i >= 0 ? i : -i - 1, to);
+    }
+
+    public void insert(int key) {
+        Node leaf = findLeafForInsert(key);
+        int i = leaf.search(key);
+        if (i < 0) {
+            leaf.insertKey(-i - 1, key);
+        }
+    }
+
+    public boolean remove(int key) {
+        Node leaf = findLeafForRemove(key);
+        int i = leaf.search(key);
+        if (i >= 0) {
+            leaf.removeKey(i);
+        }
+        return i >= 0;
+    }
+
+    @Override
+    Node splitLeaf(Node fullLeaf, int mid) {
+        ABTreeLeaf newLeaf = newLeaf();
+        moveKeys(fullLeaf, mid, newLeaf);
+        link((ABTreeLeaf) fullLeaf, newLeaf);
+        return newLeaf;
+    }
+
+    @Override
+    void mergeLeaves(Node left, Node right) {
+        moveKeys(right, 0, left);
+        ((ABTreeLeaf) left).next = ((ABTreeLeaf) right).next;
+    }
+
+    // Puts the new leaf right after the given one in the chain of leaves
+    static void link(ABTreeLeaf leaf, ABTreeLeaf newLeaf) {
+        newLeaf.next = leaf.next;
+        leaf.next = newLeaf;
+    }
+
+    // Debug print
+    public void printTree() {
+        printTree(root, 0);
+    }
+
+    private void printTree(Node node, int depth) {
+        String indent = "  ".repeat(depth);
+        if (node.isLeaf()) {
+            System.out.println(indent + "Leaf: " + node.keysToString());
+        } else {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            System.out.println(indent + "Internal: " + node.keysToString());
+            for (int i = 0; i < innerNode.childCount; i++) {
+                printTree(innerNode.children[i], depth + 1);
+            }
+        }
+    }
+}
@@ -1,26 +1,129 @@
 package org.bsdro.forest.ab;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
 
 public class ABTree {
 
     private final int a; // min children
     private final int b; // max children
     private Node root;
+    private final Run leafContent = new Run();
+    private ABTreeMetrics metrics; // null while disabled
+    private CuckooFilter filter; // null while disabled
+
+    static final double DEFAULT_FILL_FACTOR = 1.0;
 
     public ABTree(int a, int b) {
         if (a < 2 || a > b / 2) throw new IllegalArgumentException("Require 2 <= a <= b/2");
         this.a = a;
         this.b = b;
-        this.root = new ABTreeLeaf(); // initially a leaf
+        this.root = new ABTreeLeaf(b); // initially a leaf
     }
 
     public boolean contains(int key) {
-        return contains(root, key);
+        if (metrics == null) {
+            return lookup(key);
+        }
+        ABTreeOperationEvent event = metrics.begin();
+        boolean result = lookup(key);
+        metrics.end(event, "contains", key);
+        return result;
+    }
+
+    private boolean lookup(int key) {
+        if (filter == null) {
+            return contains(root, key);
+        }
+        if (!filter.mightContain(key)) {
+            return false;
+        }
+        boolean result = contains(root, key);
+        if (!result) {
+            filter.falsePositive();
+        }
+        return result;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    /**
+     * Starts counting structural changes and reporting slow operations to Flight Recorder, and returns the
+     * metrics. Until then the tree pays only a null check per operation and structural change.
+     */
+    public ABTreeMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new ABTreeMetrics(this);
+        }
+        return metrics;
+    }
+
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * The metrics of this tree, or null if they are disabled.
+     */
+    public ABTreeMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Builds a {@link CuckooFilter} over the keys and puts it in front of {@link #contains}, so that most absent
+     * keys are rejected without a descent. Every update keeps the filter in sync from then on, at the cost of
+     * rebuilding it from the keys when it has to grow or shrink.
+     */
+    public CuckooFilter enableFilter() {
+        if (filter == null) {
+            filter = new CuckooFilter();
+            rebuildFilter();
+        }
+        return filter;
+    }
+
+    public void disableFilter() {
+        filter = null;
+    }
+
+    /**
+     * The filter of this tree, or null if it is disabled.
+     */
+    public CuckooFilter filter() {
+        return filter;
+    }
+
+    // Called at the end of every update, when the tree is valid again
+    private void resizeFilterIfNeeded() {
+        if (filter != null && filter.needsRebuild()) {
+            rebuildFilter();
+        }
+    }
+
+    // Drops every fingerprint once the tree has given its keys away
+    private void clearFilter() {
+        if (filter != null) {
+            filter.reset(0);
+        }
+    }
+
+    private void rebuildFilter() {
+        int keys = countKeys(root);
+        do {
+            filter.reset(keys);
+            forEach(root, filter::add);
+            keys *= 2;
+        } while (filter.overflowed());
     }
 
     private boolean contains(Node node, int key) {
-        int i = Collections.binarySearch(node.keys, key);
+        int i = node.search(key);
         if (i >= 0) {
             return true;
         }
@@ -31,118 +134,143 @@ public class ABTree {
 
         ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
         int childIndex = -i - 1;
-        if (childIndex >= innerNode.children.size()) {
-            childIndex = innerNode.children.size() - 1;
+        if (childIndex >= innerNode.childCount) {
+            childIndex = innerNode.childCount - 1;
         }
-        return contains(innerNode.children.get(childIndex), key);
+        return contains(innerNode.children[childIndex], key);
     }
 
     public void insert(int key) {
+        ABTreeOperationEvent event = metrics != null ? metrics.begin() : null;
         Node r = root;
         if (isFull(r)) {
-            ABTreeInnerNode newRoot = new ABTreeInnerNode();
-            newRoot.children.add(r);
+            ABTreeInnerNode newRoot = new ABTreeInnerNode(b);
+            newRoot.insertChild(0, r);
             splitChild(newRoot, 0);
             root = newRoot;
         }
         insertNonFull(root, key);
+        resizeFilterIfNeeded();
+        if (event != null) {
+            metrics.end(event, "insert", key);
+        }
     }
 
     private void insertNonFull(Node node, int key) {
         if (node.isLeaf()) {
-            int i = Collections.binarySearch(node.keys, key);
+            int i = node.search(key);
             if (i < 0)  {
                 i = -i - 1;
-                node.keys.add(i, key);
+                node.insertKey(i, key);
+                if (filter != null) {
+                    filter.add(key);
+                }
             }
         } else {
             ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
-            int i = findChildIndex(node, key);
+            int i = node.search(key);
+            if (i >= 0) {
+                // Already present as a separator, do not push a duplicate into the subtree
+                return;
+            }
+            i = -i - 1;
             // Check if i is within bounds before accessing
-            if (i >= innerNode.children.size()) {
-                i = innerNode.children.size() - 1;
+            if (i >= innerNode.childCount) {
+                i = innerNode.childCount - 1;
             }
-            Node child = innerNode.children.get(i);
+            Node child = innerNode.children[i];
             if (isFull(child)) {
                 splitChild(innerNode, i);
-                if (key > node.keys.get(i)) { // Changed from >= to > to fix potential issue
+                if (key == node.keys[i]) {
+                    return;
+                }
+                if (key > node.keys[i]) { // Changed from >= to > to fix potential issue
                     i++;
                 }
                 // Ensure i is within bounds after increment
-                if (i >= innerNode.children.size()) {
-                    i = innerNode.children.size() - 1;
+                if (i >= innerNode.childCount) {
+                    i = innerNode.childCount - 1;
                 }
             }
-            insertNonFull(innerNode.children.get(i), key);
+            insertNonFull(innerNode.children[i], key);
         }
     }
 
 
     private void splitChild(ABTreeInnerNode parent, int index) {
-        Node fullNode = parent.children.get(index);
+        if (metrics != null) {
+            metrics.split(1);
+        }
+        Node fullNode = parent.children[index];
         Node newNode;
 
         if (fullNode.isLeaf()) {
-            newNode = new ABTreeLeaf();
+            newNode = new ABTreeLeaf(b);
         } else {
-            newNode = new ABTreeInnerNode();
+            newNode = new ABTreeInnerNode(b);
         }
 
-        int mid = fullNode.keys.size() / 2;
+        int mid = fullNode.keyCount / 2;
 
-        // Split keys
-        newNode.keys.addAll(fullNode.keys.subList(mid, fullNode.keys.size()));
-        fullNode.keys.subList(mid, fullNode.keys.size()).clear();
+        // Promote middle key of fullNode to parent, the keys after it move to newNode
+        int separator = fullNode.keys[mid];
+        int moved = fullNode.keyCount - mid - 1;
+        System.arraycopy(fullNode.keys, mid + 1, newNode.keys, 0, moved);
+        newNode.keyCount = moved;
+        fullNode.keyCount = mid;
 
         // Split children if internal
         if (!fullNode.isLeaf()) {
             ABTreeInnerNode innerFullNode = (ABTreeInnerNode) fullNode;
             ABTreeInnerNode innerNewNode = (ABTreeInnerNode) newNode;
-            innerNewNode.children.addAll(innerFullNode.children.subList(mid + 1, innerFullNode.children.size()));
-            innerFullNode.children.subList(mid + 1, innerFullNode.children.size()).clear();
+            int movedChildren = innerFullNode.childCount - mid - 1;
+            System.arraycopy(innerFullNode.children, mid + 1, innerNewNode.children, 0, movedChildren);
+            Arrays.fill(innerFullNode.children, mid + 1, innerFullNode.childCount, null);
+            innerNewNode.childCount = movedChildren;
+            innerFullNode.childCount = mid + 1;
         }
 
-        // Promote middle key of fullNode to parent
-        int separator = newNode.keys.remove(0); // Remove from newNode and use as separator
-        parent.keys.add(index, separator);
-        parent.children.add(index + 1, newNode);
-    }
-
-
-    private int findChildIndex(Node node, int key) {
-        int i = Collections.binarySearch(node.keys, key);
-        return i >= 0 ? i + 1 : -i - 1;
+        parent.insertKey(index, separator);
+        parent.insertChild(index + 1, newNode);
     }
 
     private boolean isFull(Node node) {
-        return node.keys.size() >= b - 1;
+        return node.keyCount >= b - 1;
     }
 
+    /**
+     * Removes the key in a single top-down pass and reports whether it was present. Nodes on the path are
+     * refilled before descending whether or not the key is found, which keeps the tree valid either way.
+     */
     public boolean remove(int key) {
-        if (!contains(key)) {
-            return false;
-        }
-
+        ABTreeOperationEvent event = metrics != null ? metrics.begin() : null;
         boolean result = removeFromNode(root, key);
+        if (result && filter != null) {
+            filter.remove(key);
+            resizeFilterIfNeeded();
+        }
 
         // If root is an inner node with no keys and only one child, make that child the new root
-        if (!root.isLeaf() && root.keys.isEmpty()) {
+        if (!root.isLeaf() && root.keyCount == 0) {
             ABTreeInnerNode innerRoot = (ABTreeInnerNode) root;
-            if (innerRoot.children.size() == 1) {
-                root = innerRoot.children.get(0);
+            if (innerRoot.childCount == 1) {
+                root = innerRoot.firstChild();
             }
         }
 
+        if (event != null) {
+            metrics.end(event, "remove", key);
+        }
         return result;
     }
 
     private boolean removeFromNode(Node node, int key) {
-        int i = Collections.binarySearch(node.keys, key);
+        int i = node.search(key);
 
         if (node.isLeaf()) {
             // Key found in leaf node, remove it
             if (i >= 0) {
-                node.keys.remove(i);
+                node.removeKey(i);
                 return true;
             }
             return false;
@@ -153,30 +281,22 @@ public class ABTree {
         // Key found in internal node
         if (i >= 0) {
             // Get the predecessor from the left child
-            Node leftChild = innerNode.children.get(i);
-            if (leftChild.keys.size() >= a) { // Has enough keys to borrow
-                // Find the largest key in the left subtree (predecessor)
-                int predecessor = findLargestKey(leftChild);
-                // Replace the key with its predecessor
-                node.keys.set(i, predecessor);
-                // Remove the predecessor from the left subtree
-                removeFromNode(leftChild, predecessor);
+            Node leftChild = innerNode.children[i];
+            if (leftChild.keyCount >= a) { // Has enough keys to borrow
+                // Replace the key with its predecessor, removed from the left subtree on the same way down
+                node.keys[i] = takeLargestKey(leftChild);
             } else {
                 // Get the successor from the right child
-                Node rightChild = innerNode.children.get(i + 1);
-                if (rightChild.keys.size() >= a) { // Has enough keys to borrow
-                    // Find the smallest key in the right subtree (successor)
-                    int successor = findSmallestKey(rightChild);
-                    // Replace the key with its successor
-                    node.keys.set(i, successor);
-                    // Remove the successor from the right subtree
-                    removeFromNode(rightChild, successor);
+                Node rightChild = innerNode.children[i + 1];
+                if (rightChild.keyCount >= a) { // Has enough keys to borrow
+                    // Replace the key with its successor, removed from the right subtree on the same way down
+                    node.keys[i] = takeSmallestKey(rightChild);
                 } else {
                     // Merge left and right children
                     mergeNodes(innerNode, i);
                     // Now the key and right child are in the left child
                     // Remove the key from the merged node
-                    removeFromNode(innerNode.children.get(i), key);
+                    removeFromNode(innerNode.children[i], key);
                 }
             }
             return true;
@@ -184,61 +304,89 @@ public class ABTree {
 
         // Key not found in this node, determine which child to search
         int childIndex = -i - 1;
-        if (childIndex >= innerNode.children.size()) {
-            childIndex = innerNode.children.size() - 1;
+        if (childIndex >= innerNode.childCount) {
+            childIndex = innerNode.childCount - 1;
         }
 
-        Node child = innerNode.children.get(childIndex);
+        Node child = innerNode.children[childIndex];
 
         // Ensure the child has at least 'a' keys before descending
-        if (child.keys.size() < a) {
+        if (child.keyCount < a) {
             ensureChildHasMinKeys(innerNode, childIndex);
             // After ensuring min keys, childIndex might be invalid due to merging
-            // Recalculate childIndex
-            childIndex = -i - 1;
-            if (childIndex >= innerNode.children.size()) {
-                childIndex = innerNode.children.size() - 1;
+            // with the left sibling, so recalculate it from the updated keys
+            childIndex = -node.search(key) - 1;
+            if (childIndex >= innerNode.childCount) {
+                childIndex = innerNode.childCount - 1;
             }
         }
 
-        return removeFromNode(innerNode.children.get(childIndex), key);
+        return removeFromNode(innerNode.children[childIndex], key);
     }
 
-    private int findLargestKey(Node node) {
-        if (node.isLeaf()) {
-            return node.keys.get(node.keys.size() - 1);
+    // Removes and returns the largest key below a node holding at least 'a' keys, refilling children top-down
+    private int takeLargestKey(Node node) {
+        while (!node.isLeaf()) {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            if (innerNode.lastChild().keyCount < a) {
+                ensureChildHasMinKeys(innerNode, innerNode.childCount - 1);
+            }
+            node = innerNode.lastChild();
         }
-        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
-        return findLargestKey(innerNode.children.get(innerNode.children.size() - 1));
+        return node.removeKey(node.keyCount - 1);
+    }
+
+    // Removes and returns the smallest key below a node holding at least 'a' keys, refilling children top-down
+    private int takeSmallestKey(Node node) {
+        while (!node.isLeaf()) {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            if (innerNode.firstChild().keyCount < a) {
+                ensureChildHasMinKeys(innerNode, 0);
+            }
+            node = innerNode.firstChild();
+        }
+        return node.removeKey(0);
     }
 
     private int findSmallestKey(Node node) {
         if (node.isLeaf()) {
-            return node.keys.get(0);
+            return node.firstKey();
         }
         ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
-        return findSmallestKey(innerNode.children.get(0));
+        return findSmallestKey(innerNode.firstChild());
+    }
+
+    private int findLargestKey(Node node) {
+        while (!node.isLeaf()) {
+            node = ((ABTreeInnerNode) node).lastChild();
+        }
+        return node.keys[node.keyCount - 1];
     }
 
     private void mergeNodes(ABTreeInnerNode parent, int index) {
-        Node leftChild = parent.children.get(index);
-        Node rightChild = parent.children.get(index + 1);
+        if (metrics != null) {
+            metrics.merge();
+        }
+        Node leftChild = parent.children[index];
+        Node rightChild = parent.children[index + 1];
 
         // Add the separator key from parent to the left child
-        leftChild.keys.add(parent.keys.remove(index));
+        leftChild.keys[leftChild.keyCount++] = parent.removeKey(index);
 
         // Add all keys from right child to left child
-        leftChild.keys.addAll(rightChild.keys);
+        System.arraycopy(rightChild.keys, 0, leftChild.keys, leftChild.keyCount, rightChild.keyCount);
+        leftChild.keyCount += rightChild.keyCount;
 
         // If these are inner nodes, move the children as well
         if (!leftChild.isLeaf()) {
             ABTreeInnerNode leftInner = (ABTreeInnerNode) leftChild;
             ABTreeInnerNode rightInner = (ABTreeInnerNode) rightChild;
-            leftInner.children.addAll(rightInner.children);
+            System.arraycopy(rightInner.children, 0, leftInner.children, leftInner.childCount, rightInner.childCount);
+            leftInner.childCount += rightInner.childCount;
         }
 
         // Remove the right child from the parent
-        parent.children.remove(index + 1);
+        parent.removeChild(index + 1);
     }
 
     private void ensureChildHasMinKeys(ABTreeInnerNode parent, int childIndex) {
@@ -246,17 +394,17 @@ public class ABTree {
 
         // Try to borrow from left sibling
         if (childIndex > 0) {
-            Node leftSibling = parent.children.get(childIndex - 1);
-            if (leftSibling.keys.size() >= a) {
+            Node leftSibling = parent.children[childIndex - 1];
+            if (leftSibling.keyCount >= a) {
                 borrowFromLeftSibling(parent, childIndex);
                 return;
             }
         }
 
         // Try to borrow from right sibling
-        if (childIndex < parent.children.size() - 1) {
-            Node rightSibling = parent.children.get(childIndex + 1);
-            if (rightSibling.keys.size() >= a) {
+        if (childIndex < parent.childCount - 1) {
+            Node rightSibling = parent.children[childIndex + 1];
+            if (rightSibling.keyCount >= a) {
                 borrowFromRightSibling(parent, childIndex);
                 return;
             }
@@ -273,38 +421,804 @@ public class ABTree {
     }
 
     private void borrowFromLeftSibling(ABTreeInnerNode parent, int childIndex) {
-        Node child = parent.children.get(childIndex);
-        Node leftSibling = parent.children.get(childIndex - 1);
+        if (metrics != null) {
+            metrics.borrow();
+        }
+        Node child = parent.children[childIndex];
+        Node leftSibling = parent.children[childIndex - 1];
 
         // Move separator key from parent to child
-        child.keys.add(0, parent.keys.get(childIndex - 1));
+        child.insertKey(0, parent.keys[childIndex - 1]);
 
         // Move largest key from left sibling to parent
-        parent.keys.set(childIndex - 1, leftSibling.keys.remove(leftSibling.keys.size() - 1));
+        parent.keys[childIndex - 1] = leftSibling.keys[--leftSibling.keyCount];
 
         // If these are inner nodes, move the rightmost child of left sibling to child
         if (!child.isLeaf()) {
             ABTreeInnerNode childInner = (ABTreeInnerNode) child;
             ABTreeInnerNode leftInner = (ABTreeInnerNode) leftSibling;
-            childInner.children.add(0, leftInner.children.remove(leftInner.children.size() - 1));
+            childInner.insertChild(0, leftInner.removeChild(leftInner.childCount - 1));
         }
     }
 
     private void borrowFromRightSibling(ABTreeInnerNode parent, int childIndex) {
-        Node child = parent.children.get(childIndex);
-        Node rightSibling = parent.children.get(childIndex + 1);
+        if (metrics != null) {
+            metrics.borrow();
+        }
+        Node child = parent.children[childIndex];
+        Node rightSibling = parent.children[childIndex + 1];
 
         // Move separator key from parent to child
-        child.keys.add(parent.keys.get(childIndex));
+        child.keys[child.keyCount++] = parent.keys[childIndex];
 
         // Move smallest key from right sibling to parent
-        parent.keys.set(childIndex, rightSibling.keys.remove(0));
+        parent.keys[childIndex] = rightSibling.removeKey(0);
 
         // If these are inner nodes, move the leftmost child of right sibling to child
         if (!child.isLeaf()) {
             ABTreeInnerNode childInner = (ABTreeInnerNode) child;
             ABTreeInnerNode rightInner = (ABTreeInnerNode) rightSibling;
-            childInner.children.add(rightInner.children.remove(0));
+            childInner.insertChild(childInner.childCount, rightInner.removeChild(0));
+        }
+    }
+
+    /**
+     * Inserts the given keys, which must be in ascending order, and returns how many of them were not present yet.
+     * The batch is split by the separators of each node on the way down, so a node is visited once per batch
+     * however many of the keys fall below it, and nodes that overflow are split into as many evenly filled
+     * siblings as they need at once.
+     */
+    public int insertAll(int[] sortedKeys) {
+        checkAscending(sortedKeys);
+        if (sortedKeys.length == 0) {
+            return 0;
+        }
+        ABTreeOperationEvent event = metrics != null ? metrics.begin() : null;
+        int[] inserted = {0};
+        root = grow(root, insertAll(root, sortedKeys, 0, sortedKeys.length, inserted));
+        resizeFilterIfNeeded();
+        if (event != null) {
+            metrics.end(event, "insertAll", sortedKeys.length);
+        }
+        return inserted[0];
+    }
+
+    // Returns the siblings that had to be split off to the right of node, or null if it kept all its keys
+    private Run insertAll(Node node, int[] batch, int from, int to, int[] inserted) {
+        if (node.isLeaf()) {
+            // Leaf contents are consumed by distribute before the next leaf is visited, so one buffer serves all
+            Run content = leafContent;
+            content.keyCount = 0;
+            int i = 0;
+            int j = from;
+            while (i < node.keyCount || j < to) {
+                boolean fromNode = j >= to || (i < node.keyCount && node.keys[i] <= batch[j]);
+                int key = fromNode ? node.keys[i++] : batch[j++];
+                if (content.keyCount > 0 && content.keys[content.keyCount - 1] == key) {
+                    continue;
+                }
+                content.addKey(key);
+                if (!fromNode) {
+                    inserted[0]++;
+                    if (filter != null) {
+                        filter.add(key);
+                    }
+                }
+            }
+            return distribute(node, content);
+        }
+
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        Run content = null;
+        int start = from;
+        for (int i = 0; i < innerNode.childCount; i++) {
+            int end = endOfChild(node, i, batch, start, to);
+            Run siblings = end > start ? insertAll(innerNode.children[i], batch, start, end, inserted) : null;
+            if (siblings != null && content == null) {
+                // First split below this node, collect its content from here on
+                content = new Run();
+                for (int c = 0; c < i; c++) {
+                    content.addNode(innerNode.children[c]);
+                    content.addKey(node.keys[c]);
+                }
+            }
+            if (content != null) {
+                content.addNode(innerNode.children[i]);
+                if (siblings != null) {
+                    content.addAll(siblings);
+                }
+                if (i < node.keyCount) {
+                    content.addKey(node.keys[i]);
+                }
+            }
+            if (i < node.keyCount) {
+                // Keys equal to the separator are already present
+                start = end;
+                while (start < to && batch[start] == node.keys[i]) {
+                    start++;
+                }
+            }
+        }
+        return content != null ? distribute(node, content) : null;
+    }
+
+    /**
+     * Removes the given keys, which must be in ascending order, and returns how many of them were present.
+     * Like {@link #insertAll}, each node is visited once per batch. Nodes may underflow while the batch passes
+     * through them and are repaired on the way back up by borrowing from and merging with their siblings.
+     */
+    public int removeAll(int[] sortedKeys) {
+        checkAscending(sortedKeys);
+        if (sortedKeys.length == 0) {
+            return 0;
+        }
+        ABTreeOperationEvent event = metrics != null ? metrics.begin() : null;
+        int removed = removeAll(root, sortedKeys, 0, sortedKeys.length);
+        while (!root.isLeaf() && root.keyCount == 0) {
+            root = ((ABTreeInnerNode) root).firstChild();
+        }
+        resizeFilterIfNeeded();
+        if (event != null) {
+            metrics.end(event, "removeAll", sortedKeys.length);
+        }
+        return removed;
+    }
+
+    // Leaves the subtree valid except that node itself may hold fewer than a - 1 keys
+    private int removeAll(Node node, int[] batch, int from, int to) {
+        if (node.isLeaf()) {
+            int removed = 0;
+            int kept = 0;
+            int j = from;
+            for (int i = 0; i < node.keyCount; i++) {
+                int key = node.keys[i];
+                while (j < to && batch[j] < key) {
+                    j++;
+                }
+                if (j < to && batch[j] == key) {
+                    removed++;
+                    if (filter != null) {
+                        filter.remove(key);
+                    }
+                } else {
+                    node.keys[kept++] = key;
+                }
+            }
+            node.keyCount = kept;
+            return removed;
+        }
+
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        int removed = 0;
+        boolean[] separatorRemoved = null;
+        int start = from;
+        for (int i = 0; i < innerNode.childCount; i++) {
+            int end = endOfChild(node, i, batch, start, to);
+            if (end > start) {
+                removed += removeAll(innerNode.children[i], batch, start, end);
+            }
+            start = end;
+            if (i < node.keyCount && start < to && batch[start] == node.keys[i]) {
+                if (separatorRemoved == null) {
+                    separatorRemoved = new boolean[node.keyCount];
+                }
+                separatorRemoved[i] = true;
+                while (start < to && batch[start] == node.keys[i]) {
+                    start++;
+                }
+            }
+        }
+
+        if (separatorRemoved != null) {
+            // Right to left, so that dropping an empty child does not shift the separators still to be replaced
+            for (int i = separatorRemoved.length - 1; i >= 0; i--) {
+                if (!separatorRemoved[i]) {
+                    continue;
+                }
+                if (filter != null) {
+                    filter.remove(node.keys[i]);
+                }
+                if (!isEmpty(innerNode.children[i])) {
+                    node.keys[i] = removeLargestKey(innerNode.children[i]);
+                } else if (!isEmpty(innerNode.children[i + 1])) {
+                    node.keys[i] = removeSmallestKey(innerNode.children[i + 1]);
+                } else {
+                    node.removeKey(i);
+                    innerNode.removeChild(i + 1);
+                }
+                removed++;
+            }
+        }
+        repairChildren(innerNode);
+        return removed;
+    }
+
+    private int removeLargestKey(Node node) {
+        if (node.isLeaf()) {
+            return node.removeKey(node.keyCount - 1);
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        int key = removeLargestKey(innerNode.lastChild());
+        repairChildren(innerNode);
+        return key;
+    }
+
+    private int removeSmallestKey(Node node) {
+        if (node.isLeaf()) {
+            return node.removeKey(0);
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        int key = removeSmallestKey(innerNode.firstChild());
+        repairChildren(innerNode);
+        return key;
+    }
+
+    private boolean isEmpty(Node node) {
+        while (node.keyCount == 0) {
+            if (node.isLeaf()) {
+                return true;
+            }
+            node = ((ABTreeInnerNode) node).firstChild();
+        }
+        return false;
+    }
+
+    /**
+     * Brings every child of the parent back to at least a - 1 keys. A child without keys may still have an
+     * underfull only child of its own, so each repaired child is repaired in turn.
+     */
+    private void repairChildren(ABTreeInnerNode parent) {
+        for (int i = 0; i < parent.childCount; i++) {
+            if (parent.children[i].keyCount >= a - 1) {
+                continue;
+            }
+            while (true) {
+                // Repairing the grandchildren may merge some of them and take keys from the child again
+                if (!parent.children[i].isLeaf()) {
+                    repairChildren((ABTreeInnerNode) parent.children[i]);
+                }
+                if (parent.children[i].keyCount >= a - 1 || parent.childCount == 1) {
+                    break;
+                }
+                if (i > 0 && parent.children[i - 1].keyCount >= a) {
+                    borrowFromLeftSibling(parent, i);
+                } else if (i < parent.childCount - 1 && parent.children[i + 1].keyCount >= a) {
+                    borrowFromRightSibling(parent, i);
+                } else if (i > 0) {
+                    mergeNodes(parent, --i);
+                } else {
+                    mergeNodes(parent, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every key k with {@code lo <= k <= hi} and returns how many there were. The tree is split at both
+     * bounds and the outer parts are joined again, so whole subtrees inside the range are dropped at once and
+     * only the nodes on the two boundary paths are rebuilt.
+     */
+    public int removeRange(int lo, int hi) {
+        if (lo > hi) {
+            return 0;
+        }
+        ABTreeOperationEvent event = metrics != null ? metrics.begin() : null;
+        boolean[] found = {false};
+        int[] heights = new int[2];
+        Node[] below = split(root, height(root), lo, found, heights);
+        int removed = found[0] ? 1 : 0;
+        if (found[0] && filter != null) {
+            filter.remove(lo);
+        }
+        int belowHeight = heights[0];
+        Node above = below[1];
+        int aboveHeight = heights[1];
+        if (lo < hi) {
+            found[0] = false;
+            Node[] inside = split(below[1], heights[1], hi, found, heights);
+            removed += countKeys(inside[0]) + (found[0] ? 1 : 0);
+            if (filter != null) {
+                forEach(inside[0], filter::remove);
+                if (found[0]) {
+                    filter.remove(hi);
+                }
+            }
+            above = inside[1];
+            aboveHeight = heights[1];
+        }
+        root = concat(below[0], belowHeight, above, aboveHeight);
+        resizeFilterIfNeeded();
+        if (event != null) {
+            metrics.end(event, "removeRange", lo);
+        }
+        return removed;
+    }
+
+    /**
+     * Moves every key k with {@code k >= key} to a new tree with the same bounds and returns it, this tree keeps
+     * the smaller keys. Like {@link #removeRange} this only rebuilds the nodes on one search path, so it takes
+     * O(log n) whatever the number of keys moved. With the filter enabled the new tree gets its own filter, built
+     * from the moved keys.
+     */
+    public ABTree splitAt(int key) {
+        ABTreeOperationEvent event = metrics != null ? metrics.begin() : null;
+        boolean[] found = {false};
+        int[] heights = new int[2];
+        Node[] parts = split(root, height(root), key, found, heights);
+        ABTree upper = new ABTree(a, b);
+        upper.root = found[0] ? join(new ABTreeLeaf(b), 0, key, parts[1], heights[1], heights) : parts[1];
+        root = parts[0];
+        if (filter != null) {
+            // The moved keys leave the filter one by one, the only part of the split not bounded by the height
+            forEach(upper.root, filter::remove);
+            resizeFilterIfNeeded();
+            upper.enableFilter();
+        }
+        if (event != null) {
+            metrics.end(event, "splitAt", key);
+        }
+        return upper;
+    }
+
+    /**
+     * Joins two trees with the same bounds whose key ranges do not overlap into a new tree in O(log n), taking
+     * over their nodes. Both trees are empty afterwards. If either tree has the filter enabled, the joined tree
+     * gets a filter built from all its keys, which is the one O(n) step.
+     *
+     * @throws IllegalArgumentException if the bounds differ or a key of {@code left} is not below every key of
+     *                                  {@code right}
+     */
+    public static ABTree concat(ABTree left, ABTree right) {
+        if (left.a != right.a || left.b != right.b) throw new IllegalArgumentException("Require equal (a,b) bounds");
+        if (!left.isEmpty(left.root) && !right.isEmpty(right.root)
+                && left.findLargestKey(left.root) >= right.findSmallestKey(right.root)) {
+            throw new IllegalArgumentException("Require the keys of left to be below those of right");
+        }
+        ABTree joined = new ABTree(left.a, left.b);
+        joined.root = left.concat(left.root, height(left.root), right.root, height(right.root));
+        left.root = new ABTreeLeaf(left.b);
+        right.root = new ABTreeLeaf(right.b);
+        if (left.filter != null || right.filter != null) {
+            joined.enableFilter();
+        }
+        left.clearFilter();
+        right.clearFilter();
+        return joined;
+    }
+
+    private static int countKeys(Node node) {
+        int count = node.keyCount;
+        if (!node.isLeaf()) {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            for (int i = 0; i < innerNode.childCount; i++) {
+                count += countKeys(innerNode.children[i]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Splits the subtree into a tree of the keys below {@code key} and a tree of the keys above it, dropping the
+     * key itself and reporting it in {@code found}. The nodes off the search path are reused, those on it are
+     * joined into the two results on the way back up, and their heights are left in {@code heights}. The split
+     * subtree must not be used afterwards.
+     */
+    private Node[] split(Node node, int height, int key, boolean[] found, int[] heights) {
+        int i = node.search(key);
+        if (node.isLeaf()) {
+            int cut = i >= 0 ? i : -i - 1;
+            int skip = i >= 0 ? 1 : 0;
+            ABTreeLeaf left = new ABTreeLeaf(b);
+            ABTreeLeaf right = new ABTreeLeaf(b);
+            System.arraycopy(node.keys, 0, left.keys, 0, cut);
+            left.keyCount = cut;
+            System.arraycopy(node.keys, cut + skip, right.keys, 0, node.keyCount - cut - skip);
+            right.keyCount = node.keyCount - cut - skip;
+            found[0] |= i >= 0;
+            heights[0] = 0;
+            heights[1] = 0;
+            return new Node[]{left, right};
+        }
+
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        if (i >= 0) {
+            found[0] = true;
+            heights[0] = partHeight(0, i + 1, height);
+            heights[1] = partHeight(i + 1, innerNode.childCount, height);
+            return new Node[]{part(innerNode, 0, i + 1), part(innerNode, i + 1, innerNode.childCount)};
+        }
+        int childIndex = -i - 1;
+        Node[] parts = split(innerNode.children[childIndex], height - 1, key, found, heights);
+        Node left = parts[0];
+        int leftHeight = heights[0];
+        Node right = parts[1];
+        int rightHeight = heights[1];
+        if (childIndex > 0) {
+            left = join(part(innerNode, 0, childIndex), partHeight(0, childIndex, height),
+                    node.keys[childIndex - 1], left, leftHeight, heights);
+            leftHeight = heights[0];
+        }
+        if (childIndex < node.keyCount) {
+            right = join(right, rightHeight, node.keys[childIndex],
+                    part(innerNode, childIndex + 1, innerNode.childCount),
+                    partHeight(childIndex + 1, innerNode.childCount, height), heights);
+            rightHeight = heights[0];
+        }
+        heights[0] = leftHeight;
+        heights[1] = rightHeight;
+        return new Node[]{left, right};
+    }
+
+    // Height of part(node, from, to) for a node of the given height
+    private static int partHeight(int from, int to, int height) {
+        return to - from == 1 ? height - 1 : height;
+    }
+
+    // The children from..to-1 with the keys between them, as a tree of its own
+    private Node part(ABTreeInnerNode node, int from, int to) {
+        if (to - from == 1) {
+            return node.children[from];
+        }
+        ABTreeInnerNode part = new ABTreeInnerNode(b);
+        System.arraycopy(node.keys, from, part.keys, 0, to - from - 1);
+        part.keyCount = to - from - 1;
+        System.arraycopy(node.children, from, part.children, 0, to - from);
+        part.childCount = to - from;
+        return part;
+    }
+
+    /**
+     * Joins two trees whose keys are all smaller and all larger than {@code key} into one holding the key as
+     * well. The lower tree is attached along the left spine of the taller one or the other way round, and only
+     * the nodes where they meet are redistributed, so this takes O(|leftHeight - rightHeight| + 1). Either tree
+     * may be an empty leaf. The height of the joined tree is left in {@code height[0]}.
+     */
+    private Node join(Node left, int leftHeight, int key, Node right, int rightHeight, int[] height) {
+        if (leftHeight >= rightHeight) {
+            return grow(left, leftHeight, joinRight(left, leftHeight, key, right, rightHeight), height);
+        }
+        return grow(right, rightHeight, joinLeft(left, leftHeight, key, right, rightHeight), height);
+    }
+
+    private Run joinRight(Node left, int leftHeight, int key, Node right, int rightHeight) {
+        if (leftHeight == rightHeight) {
+            return distribute(left, joinedContent(left, key, right));
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) left;
+        int last = innerNode.childCount - 1;
+        Run siblings = joinRight(innerNode.children[last], leftHeight - 1, key, right, rightHeight);
+        return siblings != null ? insertSiblings(innerNode, last, siblings) : null;
+    }
+
+    private Run joinLeft(Node left, int leftHeight, int key, Node right, int rightHeight) {
+        if (leftHeight == rightHeight) {
+            return distribute(right, joinedContent(left, key, right));
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) right;
+        Run siblings = joinLeft(left, leftHeight, key, innerNode.firstChild(), rightHeight - 1);
+        return siblings != null ? insertSiblings(innerNode, 0, siblings) : null;
+    }
+
+    private static Run joinedContent(Node left, int key, Node right) {
+        Run content = new Run();
+        appendContent(content, left);
+        content.addKey(key);
+        appendContent(content, right);
+        return content;
+    }
+
+    private static void appendContent(Run content, Node node) {
+        if (node.isLeaf()) {
+            for (int i = 0; i < node.keyCount; i++) {
+                content.addKey(node.keys[i]);
+            }
+            return;
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        for (int i = 0; i < innerNode.childCount; i++) {
+            content.addNode(innerNode.children[i]);
+            if (i < node.keyCount) {
+                content.addKey(node.keys[i]);
+            }
+        }
+    }
+
+    // Adds the siblings after child index of the node, splitting it if they do not fit
+    private Run insertSiblings(ABTreeInnerNode node, int index, Run siblings) {
+        Run content = new Run();
+        for (int i = 0; i < node.childCount; i++) {
+            content.addNode(node.children[i]);
+            if (i == index) {
+                content.addAll(siblings);
+            }
+            if (i < node.keyCount) {
+                content.addKey(node.keys[i]);
+            }
+        }
+        return distribute(node, content);
+    }
+
+    // Concatenates two trees whose keys are all smaller and all larger, using the smallest key of right to join
+    private Node concat(Node left, int leftHeight, Node right, int rightHeight) {
+        if (right.keyCount == 0 && right.isLeaf()) {
+            return left;
+        }
+        int key = findSmallestKey(right);
+        int[] heights = new int[2];
+        Node[] parts = split(right, rightHeight, key, new boolean[1], heights);
+        return join(left, leftHeight, key, parts[1], heights[1], heights);
+    }
+
+    // Adds levels above the root until the siblings split off next to it have a common parent
+    private Node grow(Node root, Run siblings) {
+        return grow(root, 0, siblings, new int[1]);
+    }
+
+    // As above, leaving the height of the grown tree in grownHeight[0]
+    private Node grow(Node root, int height, Run siblings, int[] grownHeight) {
+        while (siblings != null) {
+            Run level = new Run();
+            level.addNode(root);
+            level.addAll(siblings);
+            root = new ABTreeInnerNode(b);
+            siblings = distribute(root, level);
+            height++;
+        }
+        grownHeight[0] = height;
+        return root;
+    }
+
+    private static int height(Node node) {
+        int height = 0;
+        while (!node.isLeaf()) {
+            node = ((ABTreeInnerNode) node).firstChild();
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Stores the content in node if it fits, otherwise spreads it evenly over node and as few new siblings as
+     * possible. Returns the new siblings with the separators in front of them, or null if there are none.
+     */
+    private Run distribute(Node node, Run content) {
+        boolean leaf = node.isLeaf();
+        // A node of n keys has n + 1 children, leaves are counted the same way
+        int units = leaf ? content.keyCount + 1 : content.nodeCount;
+        int groups = (units + b - 1) / b;
+        Run siblings = groups > 1 ? new Run() : null;
+        if (groups > 1 && metrics != null) {
+            metrics.split(groups - 1);
+        }
+        int base = units / groups;
+        int larger = units % groups;
+        int unit = 0;
+        for (int g = 0; g < groups; g++) {
+            int size = g < larger ? base + 1 : base;
+            Node target = node;
+            if (g > 0) {
+                target = leaf ? new ABTreeLeaf(b) : new ABTreeInnerNode(b);
+                siblings.addKey(content.keys[unit - 1]);
+                siblings.addNode(target);
+            }
+            System.arraycopy(content.keys, unit, target.keys, 0, size - 1);
+            target.keyCount = size - 1;
+            if (!leaf) {
+                ABTreeInnerNode innerTarget = (ABTreeInnerNode) target;
+                System.arraycopy(content.nodes, unit, innerTarget.children, 0, size);
+                Arrays.fill(innerTarget.children, size, b, null);
+                innerTarget.childCount = size;
+            }
+            unit += size;
+        }
+        return siblings;
+    }
+
+    // End of the part of batch[start, to) that belongs below child i, without a search if no key does
+    private static int endOfChild(Node node, int i, int[] batch, int start, int to) {
+        if (i == node.keyCount) {
+            return to;
+        }
+        if (start == to || batch[start] >= node.keys[i]) {
+            return start;
+        }
+        return lowerBound(batch, start, to, node.keys[i]);
+    }
+
+    private static int lowerBound(int[] keys, int from, int to, int key) {
+        int i = Arrays.binarySearch(keys, from, to, key);
+        if (i < 0) {
+            return -i - 1;
+        }
+        while (i > from && keys[i - 1] == key) {
+            i--;
+        }
+        return i;
+    }
+
+    private static void checkAscending(int[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i] < keys[i - 1]) throw new IllegalArgumentException("Keys must be in ascending order");
+        }
+    }
+
+    /**
+     * Growable node content: keys and, for inner nodes, the children around them. As the return value of a
+     * split, each key is the separator in front of the node with the same index.
+     */
+    private static final class Run {
+        int[] keys = new int[16];
+        Node[] nodes = new Node[16];
+        int keyCount;
+        int nodeCount;
+
+        void addKey(int key) {
+            if (keyCount == keys.length) {
+                keys = Arrays.copyOf(keys, keyCount * 2);
+            }
+            keys[keyCount++] = key;
+        }
+
+        void addNode(Node node) {
+            if (nodeCount == nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodeCount * 2);
+            }
+            nodes[nodeCount++] = node;
+        }
+
+        void addAll(Run siblings) {
+            for (int i = 0; i < siblings.nodeCount; i++) {
+                addKey(siblings.keys[i]);
+                addNode(siblings.nodes[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of this tree with the given keys, building it bottom-up in linear time.
+     * The keys must be in ascending order, repeated keys are stored once.
+     */
+    public void bulkLoad(int[] sortedKeys) {
+        bulkLoad(sortedKeys, DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * Like {@link #bulkLoad(int[])}, filling each node to {@code fillFactor} of its capacity where the
+     * (a,b) bounds allow it. A factor below 1 leaves room for later inserts without immediate splits.
+     */
+    public void bulkLoad(int[] sortedKeys, double fillFactor) {
+        bulkLoad(Arrays.stream(sortedKeys).iterator(), fillFactor);
+    }
+
+    public void bulkLoad(PrimitiveIterator.OfInt sortedKeys) {
+        bulkLoad(sortedKeys, DEFAULT_FILL_FACTOR);
+    }
+
+    public void bulkLoad(PrimitiveIterator.OfInt sortedKeys, double fillFactor) {
+        if (!(fillFactor > 0 && fillFactor <= 1)) throw new IllegalArgumentException("Require 0 < fillFactor <= 1");
+        BulkLoader loader = new BulkLoader(fillFactor);
+        while (sortedKeys.hasNext()) {
+            loader.add(sortedKeys.nextInt());
+        }
+        root = loader.finish();
+        if (filter != null) {
+            rebuildFilter();
+        }
+    }
+
+    /**
+     * Streams sorted keys into full leaves, and whenever a node reaches its target size the next key becomes
+     * the separator handed to the level above. Only the rightmost node of each level is open at any time,
+     * and finish() repairs the right spine where those last nodes ended up underfull.
+     */
+    private final class BulkLoader {
+        private final int leafKeys;
+        private final int innerChildren;
+        private final List<ABTreeInnerNode> open = new ArrayList<>();
+        private ABTreeLeaf leaf = new ABTreeLeaf(b);
+        private boolean empty = true;
+        private int last;
+
+        BulkLoader(double fillFactor) {
+            this.leafKeys = Math.max(a - 1, Math.min(b - 1, (int) Math.round(fillFactor * (b - 1))));
+            this.innerChildren = Math.max(a, Math.min(b, (int) Math.round(fillFactor * b)));
+        }
+
+        void add(int key) {
+            if (!empty) {
+                if (key == last) {
+                    return;
+                }
+                if (key < last) throw new IllegalArgumentException("Keys must be in ascending order");
+            }
+            empty = false;
+            last = key;
+            if (leaf.keyCount < leafKeys) {
+                leaf.keys[leaf.keyCount++] = key;
+            } else {
+                close(0, leaf, key);
+                leaf = new ABTreeLeaf(b);
+            }
+        }
+
+        // Attach a finished child at the given inner level, followed by its right separator
+        private void close(int level, Node child, int separator) {
+            if (level == open.size()) {
+                open.add(new ABTreeInnerNode(b));
+            }
+            ABTreeInnerNode node = open.get(level);
+            node.insertChild(node.childCount, child);
+            if (node.childCount == innerChildren) {
+                close(level + 1, node, separator);
+                open.set(level, new ABTreeInnerNode(b));
+            } else {
+                node.keys[node.keyCount++] = separator;
+            }
+        }
+
+        Node finish() {
+            Node child = leaf;
+            for (ABTreeInnerNode node : open) {
+                node.insertChild(node.childCount, child);
+                child = node;
+            }
+            Node result = child;
+            Node node = result;
+            while (!node.isLeaf()) {
+                ABTreeInnerNode inner = (ABTreeInnerNode) node;
+                if (inner.childCount > 1) {
+                    repairLastChild(inner);
+                }
+                if (inner == result && inner.childCount == 1) {
+                    result = inner.firstChild();
+                    node = result;
+                } else {
+                    node = inner.lastChild();
+                }
+            }
+            return result;
+        }
+
+        // The last child may hold anything from zero keys up, its left sibling is always complete. Like
+        // removeFromNode, leave the child with at least 'a' keys so that a merge further down cannot
+        // take it below the minimum again
+        private void repairLastChild(ABTreeInnerNode parent) {
+            int index = parent.childCount - 1;
+            Node child = parent.children[index];
+            Node leftSibling = parent.children[index - 1];
+            if (child.keyCount >= a) {
+                return;
+            }
+            if (leftSibling.keyCount + child.keyCount < 2 * a - 1) {
+                mergeNodes(parent, index - 1);
+            } else {
+                while (child.keyCount < a || child.keyCount + 1 < leftSibling.keyCount) {
+                    borrowFromLeftSibling(parent, index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs the given action for each key in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        forEach(root, action);
+    }
+
+    private void forEach(Node node, IntConsumer action) {
+        if (node.isLeaf()) {
+            for (int i = 0; i < node.keyCount; i++) {
+                action.accept(node.keys[i]);
+            }
+            return;
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        for (int i = 0; i < innerNode.childCount; i++) {
+            forEach(innerNode.children[i], action);
+            if (i < node.keyCount) {
+                action.accept(node.keys[i]);
+            }
         }
     }
 
@@ -316,12 +1230,12 @@ public class ABTree {
     private void printTree(Node node, int depth) {
         String indent = "  ".repeat(depth);
         if (node.isLeaf()) {
-            System.out.println(indent + "Leaf: " + node.keys);
+            System.out.println(indent + "Leaf: " + node.keysToString());
         } else {
             ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
-            System.out.println(indent + "Internal: " + node.keys);
-            for (Node child : innerNode.children) {
-                printTree(child, depth + 1);
+            System.out.println(indent + "Internal: " + node.keysToString());
+            for (int i = 0; i < innerNode.childCount; i++) {
+                printTree(innerNode.children[i], depth + 1);
             }
         }
     }
@@ -0,0 +1,43 @@
+package org.bsdro.forest.ab;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Ascending cursor over the linked leaves of an {@link ABPlusTree}, up to and including an upper bound.
+ * Once positioned it never goes back to the inner nodes. The tree must not be modified while a cursor is in use.
+ */
+public final class ABTreeCursor implements PrimitiveIterator.OfInt {
+    private ABTreeLeaf leaf;
+    private int index;
+    private final int to;
+
+    ABTreeCursor(ABTreeLeaf leaf, int index, int to) {
+        this.leaf = leaf;
+        this.index = index;
+        this.to = to;
+        skipExhaustedLeaves();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return leaf != null && leaf.keyAt(index) <= to;
+    }
+
+    @Override
+    public int nextInt() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int key = leaf.keyAt(index++);
+        skipExhaustedLeaves();
+        return key;
+    }
+
+    private void skipExhaustedLeaves() {
+        while (leaf != null && index >= leaf.keyCount) {
+            leaf = leaf.next;
+            index = 0;
+        }
+    }
+}
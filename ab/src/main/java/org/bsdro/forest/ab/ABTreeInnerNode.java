@@ -1,13 +1,48 @@
 package org.bsdro.forest.ab;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 class ABTreeInnerNode extends Node {
-    List<Node> children = new ArrayList<>();
+    final Node[] children;
+    int childCount;
+
+    ABTreeInnerNode(int b) {
+        super(b);
+        this.children = new Node[b];
+    }
 
     @Override
     boolean isLeaf() {
         return false;
     }
+
+    Node firstChild() {
+        return children[0];
+    }
+
+    Node lastChild() {
+        return children[childCount - 1];
+    }
+
+    void insertChild(int index, Node child) {
+        System.arraycopy(children, index, children, index + 1, childCount - index);
+        children[index] = child;
+        childCount++;
+    }
+
+    // Appends the children from index on to target
+    void moveChildren(int from, ABTreeInnerNode target) {
+        int moved = childCount - from;
+        System.arraycopy(children, from, target.children, target.childCount, moved);
+        Arrays.fill(children, from, childCount, null);
+        target.childCount += moved;
+        childCount = from;
+    }
+
+    Node removeChild(int index) {
+        Node child = children[index];
+        System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+        children[--childCount] = null;
+        return child;
+    }
 }
@@ -1,6 +1,17 @@
 package org.bsdro.forest.ab;
 
 class ABTreeLeaf extends Node {
+    ABTreeLeaf next; // right sibling, only linked by ABPlusTree
+
+    ABTreeLeaf(int b) {
+        super(b);
+    }
+
+    // For leaves that keep their keys in another form, see Node(int[])
+    ABTreeLeaf(int[] keys) {
+        super(keys);
+    }
+
     @Override
     boolean isLeaf() {
         return true;
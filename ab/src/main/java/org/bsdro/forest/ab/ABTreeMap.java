@@ -0,0 +1,165 @@
+package org.bsdro.forest.ab;
+
+import java.util.function.IntToLongFunction;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Map from {@code int} keys to {@code long} values in the B+ layout of {@link ABPlusTree}. Each leaf keeps
+ * the values in an array parallel to its keys, so lookups, updates and scans neither box nor visit a second
+ * structure. Methods that report a missing entry return the map's {@code missingValue}, 0 unless given.
+ */
+public class ABTreeMap extends SequentialBPlusTree {
+
+    /**
+     * Receives the entries of a scan.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, long value);
+    }
+
+    private final long missingValue;
+    private int size;
+
+    public ABTreeMap(int a, int b) {
+        this(a, b, 0);
+    }
+
+    public ABTreeMap(int a, int b, long missingValue) {
+        super(a, b);
+        this.missingValue = missingValue;
+        this.root = new ABTreeMapLeaf(b);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long missingValue() {
+        return missingValue;
+    }
+
+    public boolean containsKey(int key) {
+        return findLeaf(key).search(key) >= 0;
+    }
+
+    /**
+     * Returns the value of the key, or the missing value if it is absent.
+     */
+    public long get(int key) {
+        return getOrDefault(key, missingValue);
+    }
+
+    public long getOrDefault(int key, long defaultValue) {
+        ABTreeMapLeaf leaf = (ABTreeMapLeaf) findLeaf(key);
+        int i = leaf.search(key);
+        return i >= 0 ? leaf.values[i] : defaultValue;
+    }
+
+    /**
+     * Associates the value with the key and returns the previous value, or the missing value if there was none.
+     */
+    public long put(int key, long value) {
+        ABTreeMapLeaf leaf = (ABTreeMapLeaf) findLeafForInsert(key);
+        int i = leaf.search(key);
+        if (i >= 0) {
+            long previous = leaf.values[i];
+            leaf.values[i] = value;
+            return previous;
+        }
+        leaf.insertEntry(-i - 1, key, value);
+        size++;
+        return missingValue;
+    }
+
+    /**
+     * Returns the value of the key, first storing {@code mapping.applyAsLong(key)} if it is absent.
+     */
+    public long computeIfAbsent(int key, IntToLongFunction mapping) {
+        ABTreeMapLeaf leaf = (ABTreeMapLeaf) findLeafForInsert(key);
+        int i = leaf.search(key);
+        if (i >= 0) {
+            return leaf.values[i];
+        }
+        long value = mapping.applyAsLong(key);
+        leaf.insertEntry(-i - 1, key, value);
+        size++;
+        return value;
+    }
+
+    /**
+     * Stores {@code value} if the key is absent and {@code remapping.applyAsLong(old, value)} otherwise, and returns
+     * the stored value. {@code merge(key, 1, Long::sum)} counts occurrences.
+     */
+    public long merge(int key, long value, LongBinaryOperator remapping) {
+        ABTreeMapLeaf leaf = (ABTreeMapLeaf) findLeafForInsert(key);
+        int i = leaf.search(key);
+        if (i >= 0) {
+            return leaf.values[i] = remapping.applyAsLong(leaf.values[i], value);
+        }
+        leaf.insertEntry(-i - 1, key, value);
+        size++;
+        return value;
+    }
+
+    /**
+     * Passes the entries with {@code from <= key <= to} to the consumer in ascending key order.
+     */
+    public void scan(int from, int to, EntryConsumer consumer) {
+        ABTreeMapLeaf leaf = (ABTreeMapLeaf) findLeaf(from);
+        int i = leaf.search(from);
+        i = i >= 0 ? i : -i - 1;
+        while (leaf != null) {
+            for (; i < leaf.keyCount; i++) {
+                if (leaf.keys[i] > to) {
+                    return;
+                }
+                consumer.accept(leaf.keys[i], leaf.values[i]);
+            }
+            leaf = (ABTreeMapLeaf) leaf.next;
+            i = 0;
+        }
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        scan(Integer.MIN_VALUE, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Removes the key and returns its value, or the missing value if it was absent.
+     */
+    public long remove(int key) {
+        ABTreeMapLeaf leaf = (ABTreeMapLeaf) findLeafForRemove(key);
+        int i = leaf.search(key);
+        if (i < 0) {
+            return missingValue;
+        }
+        size--;
+        return leaf.removeEntry(i);
+    }
+
+    @Override
+    Node splitLeaf(Node fullLeaf, int mid) {
+        ABTreeMapLeaf fullMapLeaf = (ABTreeMapLeaf) fullLeaf;
+        ABTreeMapLeaf newLeaf = new ABTreeMapLeaf(b);
+        System.arraycopy(fullMapLeaf.values, mid, newLeaf.values, 0, fullLeaf.keyCount - mid);
+        moveKeys(fullLeaf, mid, newLeaf);
+        ABPlusTree.link(fullMapLeaf, newLeaf);
+        return newLeaf;
+    }
+
+    @Override
+    void mergeLeaves(Node left, Node right) {
+        ABTreeMapLeaf leftLeaf = (ABTreeMapLeaf) left;
+        ABTreeMapLeaf rightLeaf = (ABTreeMapLeaf) right;
+        System.arraycopy(rightLeaf.values, 0, leftLeaf.values, leftLeaf.keyCount, rightLeaf.keyCount);
+        moveKeys(right, 0, left);
+        leftLeaf.next = rightLeaf.next;
+    }
+
+    @Override
+    void moveLeafKey(Node source, int sourceIndex, Node target, int targetIndex) {
+        int key = source.keys[sourceIndex];
+        ((ABTreeMapLeaf) target).insertEntry(targetIndex, key, ((ABTreeMapLeaf) source).removeEntry(sourceIndex));
+    }
+}
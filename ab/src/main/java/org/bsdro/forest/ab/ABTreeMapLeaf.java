@@ -0,0 +1,23 @@
+package org.bsdro.forest.ab;
+
+class ABTreeMapLeaf extends ABTreeLeaf {
+    final long[] values; // values[i] belongs to keys[i]
+
+    ABTreeMapLeaf(int b) {
+        super(b);
+        this.values = new long[b - 1];
+    }
+
+    void insertEntry(int index, int key, long value) {
+        System.arraycopy(values, index, values, index + 1, keyCount - index);
+        values[index] = value;
+        insertKey(index, key);
+    }
+
+    long removeEntry(int index) {
+        long value = values[index];
+        System.arraycopy(values, index + 1, values, index, keyCount - index - 1);
+        removeKey(index);
+        return value;
+    }
+}
@@ -0,0 +1,130 @@
+package org.bsdro.forest.ab;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation counters and shape gauges of one {@link ABTree}, see {@link ABTree#enableMetrics()}. Counters are
+ * striped {@link LongAdder}s, so reading them from a monitoring thread does not slow the tree down. Gauges walk
+ * the tree when they are read and must not race with updates.
+ */
+public final class ABTreeMetrics {
+    private final ABTree tree;
+    final LongAdder descents = new LongAdder();
+    final LongAdder splits = new LongAdder();
+    final LongAdder merges = new LongAdder();
+    final LongAdder borrows = new LongAdder();
+
+    // Structural changes of the operation in progress, reported with its Flight Recorder event
+    private int operationSplits;
+    private int operationMerges;
+    private int operationBorrows;
+
+    ABTreeMetrics(ABTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Root-to-leaf descents, one per single-key operation and one per batch.
+     */
+    public long descents() {
+        return descents.sum();
+    }
+
+    /**
+     * Nodes split, counting each new sibling of a node spread over several once.
+     */
+    public long splits() {
+        return splits.sum();
+    }
+
+    public long merges() {
+        return merges.sum();
+    }
+
+    public long borrows() {
+        return borrows.sum();
+    }
+
+    public void reset() {
+        descents.reset();
+        splits.reset();
+        merges.reset();
+        borrows.reset();
+    }
+
+    /**
+     * Number of levels, 1 for a tree that is a single leaf.
+     */
+    public int height() {
+        int height = 1;
+        for (Node node = tree.root(); !node.isLeaf(); node = ((ABTreeInnerNode) node).firstChild()) {
+            height++;
+        }
+        return height;
+    }
+
+    public int nodeCount() {
+        int count = 0;
+        for (long nodes : fillHistogram()) {
+            count += (int) nodes;
+        }
+        return count;
+    }
+
+    /**
+     * Number of nodes by key count: element i counts the nodes holding i keys.
+     */
+    public long[] fillHistogram() {
+        Node root = tree.root();
+        long[] histogram = new long[root.keys.length + 1];
+        count(root, histogram);
+        return histogram;
+    }
+
+    private static void count(Node node, long[] histogram) {
+        histogram[node.keyCount]++;
+        if (!node.isLeaf()) {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            for (int i = 0; i < innerNode.childCount; i++) {
+                count(innerNode.children[i], histogram);
+            }
+        }
+    }
+
+    void split(int count) {
+        splits.add(count);
+        operationSplits += count;
+    }
+
+    void merge() {
+        merges.increment();
+        operationMerges++;
+    }
+
+    void borrow() {
+        borrows.increment();
+        operationBorrows++;
+    }
+
+    ABTreeOperationEvent begin() {
+        descents.increment();
+        operationSplits = 0;
+        operationMerges = 0;
+        operationBorrows = 0;
+        ABTreeOperationEvent event = new ABTreeOperationEvent();
+        event.begin();
+        return event;
+    }
+
+    void end(ABTreeOperationEvent event, String operation, int key) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.key = key;
+            event.splits = operationSplits;
+            event.merges = operationMerges;
+            event.borrows = operationBorrows;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.bsdro.forest.ab;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for an {@link ABTree} operation that took longer than the threshold of the recording,
+ * 1 ms unless configured otherwise. Only emitted while the tree has metrics enabled.
+ */
+@Name("org.bsdro.forest.ab.Operation")
+@Label("ABTree Operation")
+@Category({"Forest", "ABTree"})
+@Description("Slow (a,b)-tree operation with the structural changes it caused")
+@Threshold("1 ms")
+@StackTrace(false)
+class ABTreeOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    @Description("Key of a single-key operation, lower bound of a range or size of a batch")
+    int key;
+
+    @Label("Splits")
+    int splits;
+
+    @Label("Merges")
+    int merges;
+
+    @Label("Borrows")
+    int borrows;
+}
@@ -0,0 +1,138 @@
+package org.bsdro.forest.ab;
+
+/**
+ * Node surgery shared by the trees in B+ layout: every key lives in a leaf, inner nodes only hold copies of keys
+ * as separators, and child i of an inner node holds the keys k with {@code keys[i - 1] <= k < keys[i]}. The
+ * trees differ in their node type and in what a leaf carries besides its keys, which the hooks cover, and in how
+ * they descend, which stays with them.
+ */
+abstract class BPlusTree<N extends Node> {
+
+    final int a; // min children
+    final int b; // max children
+
+    BPlusTree(int a, int b) {
+        if (a < 2 || a > b / 2) throw new IllegalArgumentException("Require 2 <= a <= b/2");
+        this.a = a;
+        this.b = b;
+    }
+
+    abstract N newInnerNode();
+
+    abstract N child(N parent, int index);
+
+    abstract int childCount(N node);
+
+    abstract void insertChild(N parent, int index, N child);
+
+    abstract N removeChild(N parent, int index);
+
+    // Appends the children of source from index on to target and removes them from source
+    abstract void moveChildren(N source, int from, N target);
+
+    /**
+     * Returns a new right sibling holding the keys of the full leaf from mid on, the full leaf keeps the rest.
+     */
+    abstract N splitLeaf(N fullLeaf, int mid);
+
+    /**
+     * Appends the content of the right leaf to the left one, the right leaf is dropped afterwards.
+     */
+    abstract void mergeLeaves(N left, N right);
+
+    /**
+     * Moves the key at sourceIndex, with whatever the leaf keeps for it, to targetIndex of another leaf.
+     */
+    void moveLeafKey(N source, int sourceIndex, N target, int targetIndex) {
+        target.insertKey(targetIndex, source.removeKey(sourceIndex));
+    }
+
+    // Appends the keys of source from index on to target and removes them from source
+    static void moveKeys(Node source, int from, Node target) {
+        int moved = source.keyCount - from;
+        System.arraycopy(source.keys, from, target.keys, target.keyCount, moved);
+        target.keyCount += moved;
+        source.keyCount = from;
+    }
+
+    int findChildIndex(Node node, int key) {
+        int i = node.search(key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    boolean isFull(Node node) {
+        return node.keyCount >= b - 1;
+    }
+
+    void splitChild(N parent, int index) {
+        N fullNode = child(parent, index);
+        int mid = fullNode.keyCount / 2;
+        N newNode;
+        int separator;
+
+        if (fullNode.isLeaf()) {
+            // Leaves keep every key, the first key of the new right leaf is copied up
+            newNode = splitLeaf(fullNode, mid);
+            separator = newNode.firstKey();
+        } else {
+            // Inner nodes push their middle key up
+            newNode = newInnerNode();
+            separator = fullNode.keys[mid];
+            moveKeys(fullNode, mid + 1, newNode);
+            fullNode.keyCount = mid;
+            moveChildren(fullNode, mid + 1, newNode);
+        }
+
+        parent.insertKey(index, separator);
+        insertChild(parent, index + 1, newNode);
+    }
+
+    void borrowFromLeftSibling(N parent, int childIndex) {
+        N child = child(parent, childIndex);
+        N leftSibling = child(parent, childIndex - 1);
+
+        if (child.isLeaf()) {
+            // Move the largest key of the left leaf over, it becomes the new separator
+            moveLeafKey(leftSibling, leftSibling.keyCount - 1, child, 0);
+            parent.keys[childIndex - 1] = child.firstKey();
+            return;
+        }
+
+        child.insertKey(0, parent.keys[childIndex - 1]);
+        parent.keys[childIndex - 1] = leftSibling.keys[--leftSibling.keyCount];
+        insertChild(child, 0, removeChild(leftSibling, childCount(leftSibling) - 1));
+    }
+
+    void borrowFromRightSibling(N parent, int childIndex) {
+        N child = child(parent, childIndex);
+        N rightSibling = child(parent, childIndex + 1);
+
+        if (child.isLeaf()) {
+            // Move the smallest key of the right leaf over, its next key becomes the new separator
+            moveLeafKey(rightSibling, 0, child, child.keyCount);
+            parent.keys[childIndex] = rightSibling.firstKey();
+            return;
+        }
+
+        child.keys[child.keyCount++] = parent.keys[childIndex];
+        parent.keys[childIndex] = rightSibling.removeKey(0);
+        insertChild(child, childCount(child), removeChild(rightSibling, 0));
+    }
+
+    void mergeNodes(N parent, int index) {
+        N leftChild = child(parent, index);
+        N rightChild = child(parent, index + 1);
+
+        // Separators are only copies, a leaf merge drops it instead of pulling it down
+        int separator = parent.removeKey(index);
+        if (leftChild.isLeaf()) {
+            mergeLeaves(leftChild, rightChild);
+        } else {
+            leftChild.keys[leftChild.keyCount++] = separator;
+            moveKeys(rightChild, 0, leftChild);
+            moveChildren(rightChild, 0, leftChild);
+        }
+
+        removeChild(parent, index + 1);
+    }
+}
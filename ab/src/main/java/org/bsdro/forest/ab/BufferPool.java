@@ -0,0 +1,102 @@
+package org.bsdro.forest.ab;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fixed number of page frames in one off-heap buffer, replaced with the clock algorithm. A page stays in its
+ * frame while pinned, dirty frames are written back when they are evicted or on {@link #flush()}.
+ */
+final class BufferPool {
+    private final PageFile file;
+    private final Page[] frames;
+    private final Map<Integer, Page> pageTable = new HashMap<>();
+    private int hand;
+    long pageReads;
+    long pageWrites;
+
+    BufferPool(PageFile file, int capacity, int b) {
+        this.file = file;
+        this.frames = new Page[capacity];
+        // PagedABTree.open keeps the pool within one buffer, multiplyExact guards any other caller
+        ByteBuffer memory = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, file.pageSize));
+        for (int i = 0; i < capacity; i++) {
+            frames[i] = new Page(memory.slice(i * file.pageSize, file.pageSize), b);
+        }
+    }
+
+    /**
+     * Pins the page, reading it from the file if it is not resident.
+     */
+    Page pin(int pageId) {
+        Page page = pageTable.get(pageId);
+        if (page == null) {
+            page = claimFrame(pageId);
+            file.read(pageId, page.buffer);
+            pageReads++;
+        }
+        page.pinCount++;
+        page.referenced = true;
+        return page;
+    }
+
+    /**
+     * Pins a frame for a page whose old contents do not matter, without reading it.
+     */
+    Page pinNew(int pageId) {
+        Page page = pageTable.get(pageId);
+        if (page == null) {
+            page = claimFrame(pageId);
+        }
+        page.pinCount++;
+        page.referenced = true;
+        page.dirty = true;
+        return page;
+    }
+
+    void unpin(Page page) {
+        page.pinCount--;
+    }
+
+    void flush() {
+        for (Page page : frames) {
+            if (page.dirty) {
+                writeBack(page);
+            }
+        }
+        file.force();
+    }
+
+    private Page claimFrame(int pageId) {
+        // Two full sweeps clear every reference bit, after that only pinned frames can be left
+        for (int scanned = 0; scanned < 2 * frames.length; scanned++) {
+            Page page = frames[hand];
+            hand = (hand + 1) % frames.length;
+            if (page.pinCount > 0) {
+                continue;
+            }
+            if (page.referenced) {
+                page.referenced = false;
+                continue;
+            }
+            if (page.pageId >= 0) {
+                if (page.dirty) {
+                    writeBack(page);
+                }
+                pageTable.remove(page.pageId);
+            }
+            page.pageId = pageId;
+            page.dirty = false;
+            pageTable.put(pageId, page);
+            return page;
+        }
+        throw new IllegalStateException("All " + frames.length + " buffer pool frames are pinned");
+    }
+
+    private void writeBack(Page page) {
+        file.write(page.pageId, page.buffer);
+        page.dirty = false;
+        pageWrites++;
+    }
+}
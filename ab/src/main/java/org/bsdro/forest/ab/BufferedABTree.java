@@ -0,0 +1,339 @@
+package org.bsdro.forest.ab;
+
+import org.bsdro.forest.ab.BufferedInnerNode.Messages;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Write-optimized (a,b)-tree in the B+ layout of {@link ABPlusTree}, after the B-epsilon tree. Inserts and removes
+ * only add a message to a buffer in the root, one buffer per child. Once a node holds more than {@code bufferSize}
+ * messages, the buffer of its busiest child is flushed one level down in a single batch, so the cost of a descent
+ * is shared by every message that travels with it. Lookups check the buffer next to each child on their way to the
+ * leaf, the first message found for the key decides.
+ */
+public class BufferedABTree {
+
+    static final int DEFAULT_BUFFER_FACTOR = 16;
+
+    private final int a; // min children
+    private final int b; // max children
+    private final int bufferSize;
+    private final int[] leafContent; // a leaf with one batch applied, before it is split
+    private Node root;
+
+    /**
+     * A tree whose nodes buffer up to {@link #DEFAULT_BUFFER_FACTOR} times b messages.
+     */
+    public BufferedABTree(int a, int b) {
+        this(a, b, DEFAULT_BUFFER_FACTOR * b);
+    }
+
+    public BufferedABTree(int a, int b, int bufferSize) {
+        if (a < 2 || a > b / 2) throw new IllegalArgumentException("Require 2 <= a <= b/2");
+        if (bufferSize < 1) throw new IllegalArgumentException("Require bufferSize >= 1");
+        this.a = a;
+        this.b = b;
+        this.bufferSize = bufferSize;
+        this.leafContent = new int[2 * b];
+        this.root = new ABTreeLeaf(b);
+    }
+
+    Node root() {
+        return root;
+    }
+
+    public boolean contains(int key) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            BufferedInnerNode innerNode = (BufferedInnerNode) node;
+            int i = findChildIndex(innerNode, key);
+            Messages messages = innerNode.buffers[i];
+            int m = messages.search(key);
+            if (m >= 0) {
+                return messages.isInsert(m);
+            }
+            node = innerNode.children[i];
+        }
+        return node.search(key) >= 0;
+    }
+
+    public void insert(int key) {
+        put(key, true);
+    }
+
+    /**
+     * Removes the key if it is present. Unlike {@link ABTree#remove} this does not report whether it was, which
+     * would take a lookup.
+     */
+    public void remove(int key) {
+        put(key, false);
+    }
+
+    private void put(int key, boolean insert) {
+        if (root.isLeaf()) {
+            int i = root.search(key);
+            if (insert == i >= 0) {
+                return;
+            }
+            if (!insert) {
+                root.removeKey(i);
+                return;
+            }
+            if (root.keyCount < b - 1) {
+                root.insertKey(-i - 1, key);
+                return;
+            }
+            // The leaf is full, from now on writes go through a buffer
+            BufferedInnerNode newRoot = new BufferedInnerNode(b);
+            newRoot.insertChild(0, root);
+            root = newRoot;
+        }
+
+        BufferedInnerNode innerRoot = (BufferedInnerNode) root;
+        innerRoot.bufferCount += innerRoot.buffers[findChildIndex(innerRoot, key)].put(Messages.message(key, insert));
+        while (innerRoot.bufferCount > bufferSize) {
+            flush(innerRoot);
+            if (innerRoot.childCount > b) {
+                BufferedInnerNode newRoot = new BufferedInnerNode(b);
+                newRoot.insertChild(0, innerRoot);
+                splitChild(newRoot, 0);
+                root = newRoot;
+                return;
+            }
+            Node child = innerRoot.firstChild();
+            if (innerRoot.childCount > 1 || child.isLeaf()) {
+                if (innerRoot.childCount == 1 && innerRoot.bufferCount == 0) {
+                    root = child;
+                }
+                return;
+            }
+            // Hand the remaining messages to the only child, which becomes the root
+            push(innerRoot, 0);
+            if (innerRoot.childCount > 1) {
+                return;
+            }
+            innerRoot = (BufferedInnerNode) child;
+            root = innerRoot;
+        }
+    }
+
+    // Flushes buffers until the node is within bufferSize again or has one child too many and must be split first
+    private void flush(BufferedInnerNode node) {
+        while (node.bufferCount > bufferSize && node.childCount <= b) {
+            int busiest = 0;
+            for (int i = 1; i < node.childCount; i++) {
+                if (node.buffers[i].count > node.buffers[busiest].count) {
+                    busiest = i;
+                }
+            }
+            push(node, busiest);
+        }
+    }
+
+    private void push(BufferedInnerNode node, int index) {
+        Node child = node.children[index];
+        Messages messages = node.buffers[index];
+        if (child.isLeaf()) {
+            // At most b - 1 messages at a time, so that the leaf splits into two at most
+            int applied = Math.min(messages.count, b - 1);
+            int count = apply(child, messages, applied);
+            messages.removeFirst(applied);
+            node.bufferCount -= applied;
+            if (count <= b - 1) {
+                System.arraycopy(leafContent, 0, child.keys, 0, count);
+                child.keyCount = count;
+                if (count < a - 1 && node.childCount > 1) {
+                    mergeLeaves(node, index > 0 ? index - 1 : index);
+                }
+            } else {
+                int half = count / 2;
+                ABTreeLeaf newLeaf = new ABTreeLeaf(b);
+                System.arraycopy(leafContent, 0, child.keys, 0, half);
+                child.keyCount = half;
+                System.arraycopy(leafContent, half, newLeaf.keys, 0, count - half);
+                newLeaf.keyCount = count - half;
+                node.insertSplitChild(index, newLeaf.firstKey(), newLeaf);
+            }
+            return;
+        }
+
+        // The messages are sorted, so the child they belong to only moves right
+        BufferedInnerNode innerChild = (BufferedInnerNode) child;
+        int j = 0;
+        for (int m = 0; m < messages.count; m++) {
+            int key = messages.key(m);
+            while (j < innerChild.keyCount && key >= innerChild.keys[j]) {
+                j++;
+            }
+            innerChild.bufferCount += innerChild.buffers[j].put(messages.entries[m]);
+        }
+        node.bufferCount -= messages.count;
+        messages.count = 0;
+        if (innerChild.bufferCount > bufferSize) {
+            flush(innerChild);
+        }
+        if (innerChild.childCount > b) {
+            splitChild(node, index);
+        } else if (innerChild.childCount < a && node.childCount > 1) {
+            mergeInnerNodes(node, index > 0 ? index - 1 : index);
+        }
+    }
+
+    // Merges the leaf keys with the first messages into leafContent and returns their number
+    private int apply(Node leaf, Messages messages, int to) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < leaf.keyCount || j < to) {
+            if (j == to || (i < leaf.keyCount && leaf.keys[i] < messages.key(j))) {
+                leafContent[count++] = leaf.keys[i++];
+            } else {
+                if (i < leaf.keyCount && leaf.keys[i] == messages.key(j)) {
+                    i++;
+                }
+                if (messages.isInsert(j)) {
+                    leafContent[count++] = messages.key(j);
+                }
+                j++;
+            }
+        }
+        return count;
+    }
+
+    // Splits an inner child with b + 1 children in two, the buffers move along with their children
+    private void splitChild(BufferedInnerNode parent, int index) {
+        BufferedInnerNode fullNode = (BufferedInnerNode) parent.children[index];
+        BufferedInnerNode newNode = new BufferedInnerNode(b);
+        int mid = fullNode.childCount / 2;
+        int separator = fullNode.keys[mid - 1];
+        System.arraycopy(fullNode.keys, mid, newNode.keys, 0, fullNode.keyCount - mid);
+        newNode.keyCount = fullNode.keyCount - mid;
+        fullNode.keyCount = mid - 1;
+        for (int i = mid; i < fullNode.childCount; i++) {
+            newNode.children[i - mid] = fullNode.children[i];
+            newNode.buffers[i - mid] = fullNode.buffers[i];
+            newNode.bufferCount += fullNode.buffers[i].count;
+            fullNode.children[i] = null;
+            fullNode.buffers[i] = null;
+        }
+        newNode.childCount = fullNode.childCount - mid;
+        fullNode.childCount = mid;
+        fullNode.bufferCount -= newNode.bufferCount;
+        parent.insertSplitChild(index, separator, newNode);
+    }
+
+    private void mergeLeaves(BufferedInnerNode parent, int index) {
+        Node left = parent.children[index];
+        Node right = parent.children[index + 1];
+        int count = left.keyCount + right.keyCount;
+        if (count <= b - 1) {
+            System.arraycopy(right.keys, 0, left.keys, left.keyCount, right.keyCount);
+            left.keyCount = count;
+            parent.mergeBuffers(index);
+            parent.removeKey(index);
+            parent.removeChild(index + 1);
+            return;
+        }
+        System.arraycopy(left.keys, 0, leafContent, 0, left.keyCount);
+        System.arraycopy(right.keys, 0, leafContent, left.keyCount, right.keyCount);
+        int half = count / 2;
+        System.arraycopy(leafContent, 0, left.keys, 0, half);
+        left.keyCount = half;
+        System.arraycopy(leafContent, half, right.keys, 0, count - half);
+        right.keyCount = count - half;
+        parent.moveSeparator(index, right.firstKey());
+    }
+
+    // Merges two inner siblings, or evens them out if their children do not fit in one node
+    private void mergeInnerNodes(BufferedInnerNode parent, int index) {
+        BufferedInnerNode left = (BufferedInnerNode) parent.children[index];
+        BufferedInnerNode right = (BufferedInnerNode) parent.children[index + 1];
+        int total = left.childCount + right.childCount;
+        int[] keys = new int[total - 1];
+        Node[] children = new Node[total];
+        Messages[] buffers = new Messages[total];
+        System.arraycopy(left.keys, 0, keys, 0, left.keyCount);
+        keys[left.keyCount] = parent.keys[index];
+        System.arraycopy(right.keys, 0, keys, left.keyCount + 1, right.keyCount);
+        System.arraycopy(left.children, 0, children, 0, left.childCount);
+        System.arraycopy(right.children, 0, children, left.childCount, right.childCount);
+        System.arraycopy(left.buffers, 0, buffers, 0, left.childCount);
+        System.arraycopy(right.buffers, 0, buffers, left.childCount, right.childCount);
+
+        if (total <= b) {
+            fill(left, keys, children, buffers, 0, total);
+            parent.mergeBuffers(index);
+            parent.removeKey(index);
+            parent.removeChild(index + 1);
+            return;
+        }
+        int leftCount = total / 2;
+        fill(left, keys, children, buffers, 0, leftCount);
+        fill(right, keys, children, buffers, leftCount, total);
+        parent.moveSeparator(index, keys[leftCount - 1]);
+    }
+
+    // Makes children [from, to) with their buffers and the keys between them the content of node
+    private static void fill(BufferedInnerNode node, int[] keys, Node[] children, Messages[] buffers, int from,
+                             int to) {
+        int count = to - from;
+        System.arraycopy(keys, from, node.keys, 0, count - 1);
+        node.keyCount = count - 1;
+        node.bufferCount = 0;
+        for (int i = 0; i < node.children.length; i++) {
+            node.children[i] = i < count ? children[from + i] : null;
+            node.buffers[i] = i < count ? buffers[from + i] : null;
+            if (i < count) {
+                node.bufferCount += buffers[from + i].count;
+            }
+        }
+        node.childCount = count;
+    }
+
+    private int findChildIndex(Node node, int key) {
+        int i = node.search(key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /**
+     * Passes every key to the action in ascending order. Pending messages are applied on the fly, the tree is
+     * not changed.
+     */
+    public void forEach(IntConsumer action) {
+        forEach(root, new Messages(), action);
+    }
+
+    // The pending messages come from further up and replace what node and its subtree hold
+    private void forEach(Node node, Messages pending, IntConsumer action) {
+        if (node.isLeaf()) {
+            int i = 0;
+            int j = 0;
+            while (i < node.keyCount || j < pending.count) {
+                if (j == pending.count || (i < node.keyCount && node.keys[i] < pending.key(j))) {
+                    action.accept(node.keys[i++]);
+                } else {
+                    if (i < node.keyCount && node.keys[i] == pending.key(j)) {
+                        i++;
+                    }
+                    if (pending.isInsert(j)) {
+                        action.accept(pending.key(j));
+                    }
+                    j++;
+                }
+            }
+            return;
+        }
+
+        BufferedInnerNode innerNode = (BufferedInnerNode) node;
+        int m = 0;
+        for (int i = 0; i < innerNode.childCount; i++) {
+            Messages combined = new Messages();
+            combined.append(innerNode.buffers[i]);
+            while (m < pending.count && (i == innerNode.keyCount || pending.key(m) < innerNode.keys[i])) {
+                combined.put(pending.entries[m]);
+                m++;
+            }
+            forEach(innerNode.children[i], combined, action);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.bsdro.forest.ab;
+
+import java.util.Arrays;
+
+/**
+ * Inner node of a {@link BufferedABTree}. Next to each child it keeps the pending messages for that child's
+ * subtree, each newer than anything stored below. The node has room for one child more than the tree allows,
+ * so that a flush can split a child before the parent splits the node itself.
+ */
+class BufferedInnerNode extends ABTreeInnerNode {
+    final Messages[] buffers;
+    int bufferCount; // messages over all buffers
+
+    /**
+     * Inserts and deletes sorted by key, at most one per key. A message is the key shifted left by one with the
+     * low bit set for an insert, which keeps the order of the keys.
+     */
+    static final class Messages {
+        long[] entries = new long[4];
+        int count;
+
+        static long message(int key, boolean insert) {
+            return (long) key << 1 | (insert ? 1 : 0);
+        }
+
+        int key(int i) {
+            return (int) (entries[i] >> 1);
+        }
+
+        boolean isInsert(int i) {
+            return (entries[i] & 1) != 0;
+        }
+
+        /**
+         * Index of the message for the key, or {@code -(insertion point) - 1} as in {@link Arrays#binarySearch}.
+         */
+        int search(int key) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midKey = key(mid);
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        // Returns 1 if the message was added and 0 if it replaced the one for the same key
+        int put(long message) {
+            int i = search((int) (message >> 1));
+            if (i >= 0) {
+                entries[i] = message;
+                return 0;
+            }
+            i = -i - 1;
+            ensureCapacity(count + 1);
+            System.arraycopy(entries, i, entries, i + 1, count - i);
+            entries[i] = message;
+            count++;
+            return 1;
+        }
+
+        void removeFirst(int n) {
+            System.arraycopy(entries, n, entries, 0, count - n);
+            count -= n;
+        }
+
+        // Appends messages whose keys are all larger
+        void append(Messages other) {
+            ensureCapacity(count + other.count);
+            System.arraycopy(other.entries, 0, entries, count, other.count);
+            count += other.count;
+        }
+
+        // Moves the messages for keys from the given one on to a new buffer
+        Messages splitAt(int key) {
+            int i = search(key);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            Messages tail = new Messages();
+            tail.ensureCapacity(count - i);
+            System.arraycopy(entries, i, tail.entries, 0, count - i);
+            tail.count = count - i;
+            count = i;
+            return tail;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (entries.length < capacity) {
+                entries = Arrays.copyOf(entries, Math.max(capacity, 2 * entries.length));
+            }
+        }
+    }
+
+    BufferedInnerNode(int b) {
+        super(b + 1);
+        this.buffers = new Messages[b + 1];
+    }
+
+    @Override
+    void insertChild(int index, Node child) {
+        insertChild(index, child, new Messages());
+    }
+
+    void insertChild(int index, Node child, Messages messages) {
+        System.arraycopy(buffers, index, buffers, index + 1, childCount - index);
+        buffers[index] = messages;
+        bufferCount += messages.count;
+        super.insertChild(index, child);
+    }
+
+    @Override
+    Node removeChild(int index) {
+        bufferCount -= buffers[index].count;
+        System.arraycopy(buffers, index + 1, buffers, index, childCount - index - 1);
+        buffers[childCount - 1] = null;
+        return super.removeChild(index);
+    }
+
+    // Inserts the right part of a split child after it, together with the messages for its keys
+    void insertSplitChild(int index, int separator, Node right) {
+        Messages tail = buffers[index].splitAt(separator);
+        bufferCount -= tail.count;
+        insertKey(index, separator);
+        insertChild(index + 1, right, tail);
+    }
+
+    // Moves the messages of child index + 1 to child index, ahead of merging the two
+    void mergeBuffers(int index) {
+        buffers[index].append(buffers[index + 1]);
+        buffers[index + 1].count = 0;
+    }
+
+    // Replaces separator index, the messages follow the keys they are for
+    void moveSeparator(int index, int separator) {
+        mergeBuffers(index);
+        buffers[index + 1] = buffers[index].splitAt(separator);
+        keys[index] = separator;
+    }
+}
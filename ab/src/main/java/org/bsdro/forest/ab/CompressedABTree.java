@@ -0,0 +1,110 @@
+package org.bsdro.forest.ab;
+
+import java.util.function.IntConsumer;
+
+/**
+ * {@link ABPlusTree} whose leaves are {@link CompressedLeaf}s, made for dense or clustered keys. A leaf stores a
+ * base key and the distance of every key from it in as few bits as the widest distance needs, so b - 1 keys within
+ * a range of 2^w take about (b - 1) * w bits instead of a full int array. Lookups search the packed form, inserts
+ * and removes shift the packed deltas, and splits, merges and bulk loads re-encode the leaves they build in the
+ * narrowest frame. Inner nodes and the leaf links that {@link #scan} follows are those of {@link ABPlusTree}.
+ */
+public class CompressedABTree extends ABPlusTree {
+
+    private final int[] leafContent; // decoded keys of up to two leaves
+
+    public CompressedABTree(int a, int b) {
+        super(a, b);
+        this.leafContent = new int[2 * b];
+    }
+
+    @Override
+    CompressedLeaf newLeaf() {
+        return new CompressedLeaf();
+    }
+
+    @Override
+    Node splitLeaf(Node fullNode, int mid) {
+        // Both halves are encoded anew, each usually in fewer bits than the full leaf
+        CompressedLeaf fullLeaf = (CompressedLeaf) fullNode;
+        CompressedLeaf newLeaf = newLeaf();
+        int count = fullLeaf.decode(leafContent, 0);
+        fullLeaf.encode(leafContent, 0, mid);
+        newLeaf.encode(leafContent, mid, count);
+        link(fullLeaf, newLeaf);
+        return newLeaf;
+    }
+
+    @Override
+    void mergeLeaves(Node left, Node right) {
+        // The merged leaf is encoded in one frame
+        CompressedLeaf leftLeaf = (CompressedLeaf) left;
+        CompressedLeaf rightLeaf = (CompressedLeaf) right;
+        int count = leftLeaf.decode(leafContent, 0);
+        count += rightLeaf.decode(leafContent, count);
+        leftLeaf.encode(leafContent, 0, count);
+        leftLeaf.next = rightLeaf.next;
+    }
+
+    /**
+     * Replaces the contents of this tree with the given keys, which must be in ascending order and distinct.
+     * Keys are spread evenly over as few leaves as hold them, and each leaf is encoded once.
+     */
+    public void bulkLoad(int[] sortedKeys) {
+        for (int i = 1; i < sortedKeys.length; i++) {
+            if (sortedKeys[i] <= sortedKeys[i - 1]) {
+                throw new IllegalArgumentException("Keys must be ascending and distinct");
+            }
+        }
+        int leafCount = Math.max(1, (sortedKeys.length + b - 2) / (b - 1));
+        Node[] level = new Node[leafCount];
+        int[] firstKeys = new int[leafCount]; // smallest key below each node of the level
+        for (int i = 0; i < leafCount; i++) {
+            int from = (int) ((long) sortedKeys.length * i / leafCount);
+            int to = (int) ((long) sortedKeys.length * (i + 1) / leafCount);
+            CompressedLeaf leaf = newLeaf();
+            leaf.encode(sortedKeys, from, to);
+            if (i > 0) {
+                ((CompressedLeaf) level[i - 1]).next = leaf;
+            }
+            level[i] = leaf;
+            firstKeys[i] = from < to ? sortedKeys[from] : 0;
+        }
+        while (level.length > 1) {
+            int parentCount = (level.length + b - 1) / b;
+            Node[] parents = new Node[parentCount];
+            int[] parentFirstKeys = new int[parentCount];
+            for (int p = 0; p < parentCount; p++) {
+                int from = level.length * p / parentCount;
+                int to = level.length * (p + 1) / parentCount;
+                ABTreeInnerNode parent = new ABTreeInnerNode(b);
+                for (int i = from; i < to; i++) {
+                    if (i > from) {
+                        parent.keys[parent.keyCount++] = firstKeys[i];
+                    }
+                    parent.insertChild(parent.childCount, level[i]);
+                }
+                parents[p] = parent;
+                parentFirstKeys[p] = firstKeys[from];
+            }
+            level = parents;
+            firstKeys = parentFirstKeys;
+        }
+        root = level[0];
+    }
+
+    /**
+     * Performs the given action for each key in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = ((ABTreeInnerNode) node).firstChild();
+        }
+        for (ABTreeLeaf leaf = (ABTreeLeaf) node; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.keyCount; i++) {
+                action.accept(leaf.keyAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.bsdro.forest.ab;
+
+import java.util.Arrays;
+
+/**
+ * Leaf that stores its keys frame-of-reference encoded: a base no larger than any key and the unsigned
+ * distance of each key from it, packed into {@code width} bits per key. Deltas keep the order of the keys, so
+ * {@link #search} binary searches the packed words directly and never decodes the leaf as a whole. The inherited
+ * {@code keys} array stays empty.
+ */
+final class CompressedLeaf extends ABTreeLeaf {
+    private static final int[] NO_KEYS = {};
+    private static final long[] NO_WORDS = {};
+
+    int base;
+    int width; // bits per delta, 0 to 32
+    long[] words = NO_WORDS;
+
+    CompressedLeaf() {
+        super(NO_KEYS);
+    }
+
+    @Override
+    boolean isLeaf() {
+        return true;
+    }
+
+    @Override
+    int keyAt(int index) {
+        return base + (int) delta(words, width, index);
+    }
+
+    @Override
+    int search(int key) {
+        if (keyCount == 0 || key < base) {
+            return -1;
+        }
+        long target = (key - base) & 0xFFFFFFFFL;
+        if (target > mask(width)) {
+            return -keyCount - 1;
+        }
+        int low = 0;
+        int high = keyCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long delta = delta(words, width, mid);
+            if (delta < target) {
+                low = mid + 1;
+            } else if (delta > target) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    @Override
+    int firstKey() {
+        return keyAt(0);
+    }
+
+    @Override
+    int lastKey() {
+        return keyAt(keyCount - 1);
+    }
+
+    @Override
+    void insertKey(int index, int key) {
+        if (keyCount == 0) {
+            encode(new int[] {key}, 0, 1);
+            return;
+        }
+        // A key below the base or beyond the width needs a new frame, otherwise the deltas only shift
+        int newBase = Math.min(base, key);
+        int needed = bits(Math.max(lastKey(), key) - newBase);
+        int newWidth = newBase == base ? Math.max(width, needed) : needed;
+        if (newBase != base || newWidth != width || wordCount(keyCount + 1, width) > words.length) {
+            reframe(newBase, newWidth, keyCount + 1);
+        }
+        for (int i = keyCount; i > index; i--) {
+            setDelta(words, width, i, delta(words, width, i - 1));
+        }
+        setDelta(words, width, index, (key - base) & 0xFFFFFFFFL);
+        keyCount++;
+    }
+
+    // Removing keeps the frame, it is tightened again by the next encode
+    @Override
+    int removeKey(int index) {
+        int key = keyAt(index);
+        for (int i = index; i < keyCount - 1; i++) {
+            setDelta(words, width, i, delta(words, width, i + 1));
+        }
+        keyCount--;
+        return key;
+    }
+
+    /**
+     * Replaces the content with keys[from, to), which must be ascending, in the narrowest frame that holds them.
+     */
+    void encode(int[] keys, int from, int to) {
+        int count = to - from;
+        keyCount = count;
+        if (count == 0) {
+            width = 0;
+            words = NO_WORDS;
+            return;
+        }
+        base = keys[from];
+        width = bits(keys[to - 1] - base);
+        int wordCount = wordCount(count, width);
+        if (words.length != wordCount) {
+            words = wordCount == 0 ? NO_WORDS : new long[wordCount];
+        }
+        for (int i = 0; i < count; i++) {
+            setDelta(words, width, i, (keys[from + i] - base) & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Writes the keys to target from offset on and returns their number.
+     */
+    int decode(int[] target, int offset) {
+        for (int i = 0; i < keyCount; i++) {
+            target[offset + i] = keyAt(i);
+        }
+        return keyCount;
+    }
+
+    @Override
+    String keysToString() {
+        int[] keys = new int[keyCount];
+        decode(keys, 0);
+        return Arrays.toString(keys);
+    }
+
+    // Moves the deltas into a new frame with room for capacity keys
+    private void reframe(int newBase, int newWidth, int capacity) {
+        long[] newWords = new long[wordCount(capacity, newWidth)];
+        for (int i = 0; i < keyCount; i++) {
+            int key = base + (int) delta(words, width, i);
+            setDelta(newWords, newWidth, i, (key - newBase) & 0xFFFFFFFFL);
+        }
+        base = newBase;
+        width = newWidth;
+        words = newWords;
+    }
+
+    // Bits needed for an unsigned distance
+    private static int bits(int distance) {
+        return 32 - Integer.numberOfLeadingZeros(distance);
+    }
+
+    private static long mask(int width) {
+        return (1L << width) - 1;
+    }
+
+    private static int wordCount(int count, int width) {
+        return (int) (((long) count * width + 63) >>> 6);
+    }
+
+    private static long delta(long[] words, int width, int index) {
+        if (width == 0) {
+            return 0;
+        }
+        long bit = (long) index * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) bit & 63;
+        long value = words[word] >>> offset;
+        if (offset + width > 64) {
+            value |= words[word + 1] << (64 - offset);
+        }
+        return value & mask(width);
+    }
+
+    private static void setDelta(long[] words, int width, int index, long delta) {
+        if (width == 0) {
+            return;
+        }
+        long mask = mask(width);
+        long bit = (long) index * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) bit & 63;
+        words[word] = words[word] & ~(mask << offset) | delta << offset;
+        if (offset + width > 64) {
+            int spill = 64 - offset;
+            words[word + 1] = words[word + 1] & ~(mask >>> spill) | delta >>> spill;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.bsdro.forest.ab;
+
+import static org.bsdro.forest.ab.OptimisticNode.RESTART;
+
+/**
+ * Thread-safe (a,b)-tree in B+ layout using optimistic lock coupling. {@link #contains} never writes to shared
+ * memory and never blocks, it validates node versions along its path and retries if a writer got in the way.
+ * Writers descend the same way and only lock the nodes they change: the leaf for a plain insert or remove,
+ * parent and child for a split, parent, child and one sibling for a borrow or merge. As in {@link ABTree},
+ * full nodes are split and minimal nodes are refilled on the way down, so a change never propagates upwards.
+ */
+public class ConcurrentABTree extends BPlusTree<OptimisticNode> {
+
+    private volatile OptimisticNode root;
+
+    public ConcurrentABTree(int a, int b) {
+        super(a, b);
+        this.root = new OptimisticNode(b, true);
+    }
+
+    OptimisticNode root() {
+        return root;
+    }
+
+    public boolean contains(int key) {
+        while (true) {
+            OptimisticNode node = root;
+            long v = node.readLock();
+            if (v == RESTART || node != root) {
+                continue;
+            }
+            while (!node.isLeaf()) {
+                OptimisticNode child = node.children[findChildIndex(node, key)];
+                if (!node.validate(v)) {
+                    break;
+                }
+                long childVersion = child.readLock();
+                if (childVersion == RESTART || !node.validate(v)) {
+                    break;
+                }
+                node = child;
+                v = childVersion;
+            }
+            if (!node.isLeaf()) {
+                continue;
+            }
+            boolean found = node.search(key) >= 0;
+            if (node.validate(v)) {
+                return found;
+            }
+        }
+    }
+
+    public void insert(int key) {
+        while (!tryInsert(key)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    // One optimistic descent, false means a conflicting writer was seen and the caller has to retry
+    private boolean tryInsert(int key) {
+        OptimisticNode node = root;
+        long v = node.readLock();
+        if (v == RESTART || node != root) {
+            return false;
+        }
+        if (isFull(node)) {
+            if (!node.tryUpgrade(v)) {
+                return false;
+            }
+            OptimisticNode newRoot = new OptimisticNode(b, false);
+            newRoot.insertChild(0, node);
+            splitChild(newRoot, 0);
+            root = newRoot;
+            node.writeUnlock();
+            return false;
+        }
+        while (!node.isLeaf()) {
+            int i = findChildIndex(node, key);
+            OptimisticNode child = node.children[i];
+            if (!node.validate(v)) {
+                return false;
+            }
+            long childVersion = child.readLock();
+            if (childVersion == RESTART || !node.validate(v)) {
+                return false;
+            }
+            if (isFull(child)) {
+                if (!node.tryUpgrade(v)) {
+                    return false;
+                }
+                if (!child.tryUpgrade(childVersion)) {
+                    node.writeUnlock();
+                    return false;
+                }
+                splitChild(node, i);
+                child.writeUnlock();
+                node.writeUnlock();
+                return false;
+            }
+            node = child;
+            v = childVersion;
+        }
+        if (!node.tryUpgrade(v)) {
+            return false;
+        }
+        int i = node.search(key);
+        if (i < 0) {
+            node.insertKey(-i - 1, key);
+        }
+        node.writeUnlock();
+        return true;
+    }
+
+    // Callers hold the locks of every node that the surgery below touches. A new sibling is not reachable before
+    // its parent is changed, and readers that raced with a change fail validation before using what they read
+
+    @Override
+    OptimisticNode newInnerNode() {
+        return new OptimisticNode(b, false);
+    }
+
+    @Override
+    OptimisticNode child(OptimisticNode parent, int index) {
+        return parent.children[index];
+    }
+
+    @Override
+    int childCount(OptimisticNode node) {
+        return node.childCount;
+    }
+
+    @Override
+    void insertChild(OptimisticNode parent, int index, OptimisticNode child) {
+        parent.insertChild(index, child);
+    }
+
+    @Override
+    OptimisticNode removeChild(OptimisticNode parent, int index) {
+        return parent.removeChild(index);
+    }
+
+    @Override
+    void moveChildren(OptimisticNode source, int from, OptimisticNode target) {
+        source.moveChildren(from, target);
+    }
+
+    @Override
+    OptimisticNode splitLeaf(OptimisticNode fullLeaf, int mid) {
+        OptimisticNode newLeaf = new OptimisticNode(b, true);
+        moveKeys(fullLeaf, mid, newLeaf);
+        return newLeaf;
+    }
+
+    @Override
+    void mergeLeaves(OptimisticNode left, OptimisticNode right) {
+        moveKeys(right, 0, left);
+    }
+
+    public boolean remove(int key) {
+        while (true) {
+            int result = tryRemove(key);
+            if (result != RETRY) {
+                return result == REMOVED;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static final int RETRY = -1;
+    private static final int ABSENT = 0;
+    private static final int REMOVED = 1;
+
+    private int tryRemove(int key) {
+        OptimisticNode node = root;
+        long v = node.readLock();
+        if (v == RESTART || node != root) {
+            return RETRY;
+        }
+        while (!node.isLeaf()) {
+            int i = findChildIndex(node, key);
+            OptimisticNode child = node.children[i];
+            if (!node.validate(v)) {
+                return RETRY;
+            }
+            long childVersion = child.readLock();
+            if (childVersion == RESTART || !node.validate(v)) {
+                return RETRY;
+            }
+            if (child.keyCount < a) {
+                // Ensure the child has at least 'a' keys before descending
+                ensureChildHasMinKeys(node, v, i, childVersion);
+                return RETRY;
+            }
+            node = child;
+            v = childVersion;
+        }
+        if (!node.tryUpgrade(v)) {
+            return RETRY;
+        }
+        int i = node.search(key);
+        if (i >= 0) {
+            node.removeKey(i);
+        }
+        node.writeUnlock();
+        return i >= 0 ? REMOVED : ABSENT;
+    }
+
+    // Locks parent, then the two siblings left to right, and borrows or merges. Gives up on any conflict
+    private void ensureChildHasMinKeys(OptimisticNode parent, long parentVersion, int childIndex, long childVersion) {
+        if (!parent.tryUpgrade(parentVersion)) {
+            return;
+        }
+        OptimisticNode child = parent.children[childIndex];
+        boolean useLeft = childIndex > 0;
+        int leftIndex = useLeft ? childIndex - 1 : childIndex;
+        OptimisticNode left = parent.children[leftIndex];
+        OptimisticNode right = parent.children[leftIndex + 1];
+        OptimisticNode sibling = useLeft ? left : right;
+
+        long siblingVersion = sibling.readLock();
+        if (siblingVersion == RESTART) {
+            parent.writeUnlock();
+            return;
+        }
+        long leftVersion = useLeft ? siblingVersion : childVersion;
+        long rightVersion = useLeft ? childVersion : siblingVersion;
+        if (!left.tryUpgrade(leftVersion)) {
+            parent.writeUnlock();
+            return;
+        }
+        if (!right.tryUpgrade(rightVersion)) {
+            left.writeUnlock();
+            parent.writeUnlock();
+            return;
+        }
+
+        if (sibling.keyCount >= a) {
+            if (useLeft) {
+                borrowFromLeftSibling(parent, childIndex);
+            } else {
+                borrowFromRightSibling(parent, childIndex);
+            }
+            right.writeUnlock();
+            left.writeUnlock();
+            parent.writeUnlock();
+            return;
+        }
+
+        mergeNodes(parent, leftIndex);
+        right.writeUnlockObsolete();
+        left.writeUnlock();
+        if (parent == root && parent.keyCount == 0) {
+            // Only the root may run out of keys, its single child takes over
+            root = left;
+            parent.writeUnlockObsolete();
+        } else {
+            parent.writeUnlock();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.bsdro.forest.ab;
+
+/**
+ * Cuckoo filter over the keys of one {@link ABTree}, see {@link ABTree#enableFilter()}. Each key has a 16-bit
+ * fingerprint stored in one of two buckets of four, and a bucket is a single {@code long}, so a lookup reads at
+ * most two words and compares all four fingerprints of a bucket at once. Absent keys pass with a probability of
+ * about {@value #SLOTS} * 2 / 2^16, present keys always do. Unlike a Bloom filter, fingerprints can be deleted,
+ * which keeps the filter exact under removes.
+ * <p>
+ * The tree adds and deletes fingerprints as keys come and go and rebuilds the filter from its keys once the load
+ * leaves [{@value #MIN_LOAD}, {@value #MAX_LOAD}] or an insert finds no free slot. The counters are plain fields
+ * updated by the thread using the tree, so a reader on another thread may see slightly stale values.
+ */
+public final class CuckooFilter {
+    static final int SLOTS = 4; // fingerprints per bucket
+    static final double MAX_LOAD = 0.9;
+    static final double MIN_LOAD = 0.1;
+    static final double REBUILD_LOAD = 0.45; // at most this after a rebuild
+    static final int MIN_BUCKETS = 16;
+    static final int MAX_KICKS = 500;
+
+    private static final long LANES = 0x0001000100010001L;
+    private static final long LANE_HIGH_BITS = 0x8000800080008000L;
+
+    private long[] buckets = new long[MIN_BUCKETS];
+    private int mask = MIN_BUCKETS - 1;
+    private int size;
+    private boolean overflowed; // a fingerprint was lost, every key passes until the next rebuild
+    private int victimSeed = 1;
+    private long negatives;
+    private long falsePositives;
+    private long rebuilds;
+
+    CuckooFilter() {
+    }
+
+    /**
+     * Absent keys that the filter answered without a descent into the tree.
+     */
+    public long negatives() {
+        return negatives;
+    }
+
+    /**
+     * Absent keys that passed the filter and were only rejected by the tree.
+     */
+    public long falsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * Observed share of lookups for absent keys that the filter let through, 0 before the first one.
+     */
+    public double falsePositiveRate() {
+        long absent = negatives + falsePositives;
+        return absent == 0 ? 0 : (double) falsePositives / absent;
+    }
+
+    /**
+     * Share of the fingerprint slots in use.
+     */
+    public double load() {
+        return (double) size / capacity();
+    }
+
+    public int capacity() {
+        return buckets.length * SLOTS;
+    }
+
+    /**
+     * Times the filter was built from the keys of the tree, including the first time.
+     */
+    public long rebuilds() {
+        return rebuilds;
+    }
+
+    public void resetCounters() {
+        negatives = 0;
+        falsePositives = 0;
+        rebuilds = 0;
+    }
+
+    boolean mightContain(int key) {
+        long hash = hash(key);
+        long fingerprint = fingerprint(hash);
+        int bucket = (int) hash & mask;
+        if (overflowed || hasLane(buckets[bucket], fingerprint)
+                || hasLane(buckets[alternate(bucket, fingerprint)], fingerprint)) {
+            return true;
+        }
+        negatives++;
+        return false;
+    }
+
+    void falsePositive() {
+        falsePositives++;
+    }
+
+    void add(int key) {
+        size++;
+        if (overflowed) {
+            return;
+        }
+        long hash = hash(key);
+        long fingerprint = fingerprint(hash);
+        int bucket = (int) hash & mask;
+        if (put(bucket, fingerprint) || put(alternate(bucket, fingerprint), fingerprint)) {
+            return;
+        }
+        // Both buckets are full, move fingerprints to their other bucket until one finds room
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int shift = 16 * nextVictim();
+            long victim = buckets[bucket] >>> shift & 0xFFFF;
+            buckets[bucket] = buckets[bucket] & ~(0xFFFFL << shift) | fingerprint << shift;
+            fingerprint = victim;
+            bucket = alternate(bucket, fingerprint);
+            if (put(bucket, fingerprint)) {
+                return;
+            }
+        }
+        overflowed = true;
+    }
+
+    void remove(int key) {
+        size--;
+        if (overflowed) {
+            return;
+        }
+        long hash = hash(key);
+        long fingerprint = fingerprint(hash);
+        int bucket = (int) hash & mask;
+        if (!clear(bucket, fingerprint)) {
+            clear(alternate(bucket, fingerprint), fingerprint);
+        }
+    }
+
+    boolean needsRebuild() {
+        return overflowed || size > MAX_LOAD * capacity()
+                || (buckets.length > MIN_BUCKETS && size < MIN_LOAD * capacity());
+    }
+
+    boolean overflowed() {
+        return overflowed;
+    }
+
+    // Empties the filter, sized so that the given number of keys fills it to at most REBUILD_LOAD
+    void reset(int keys) {
+        int needed = (int) Math.min(1 << 30, (long) Math.ceil(keys / (REBUILD_LOAD * SLOTS)));
+        int bucketCount = Math.max(MIN_BUCKETS, Integer.highestOneBit(Math.max(1, needed - 1)) << 1);
+        buckets = new long[bucketCount];
+        mask = bucketCount - 1;
+        size = 0;
+        overflowed = false;
+        rebuilds++;
+    }
+
+    private boolean put(int bucket, long fingerprint) {
+        long slots = buckets[bucket];
+        for (int shift = 0; shift < 64; shift += 16) {
+            if ((slots >>> shift & 0xFFFF) == 0) {
+                buckets[bucket] = slots | fingerprint << shift;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean clear(int bucket, long fingerprint) {
+        long slots = buckets[bucket];
+        for (int shift = 0; shift < 64; shift += 16) {
+            if ((slots >>> shift & 0xFFFF) == fingerprint) {
+                buckets[bucket] = slots & ~(0xFFFFL << shift);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether any of the four 16-bit lanes equals the fingerprint, by testing the xor for a zero lane
+    private static boolean hasLane(long slots, long fingerprint) {
+        long x = slots ^ fingerprint * LANES;
+        return ((x - LANES) & ~x & LANE_HIGH_BITS) != 0;
+    }
+
+    private int alternate(int bucket, long fingerprint) {
+        return (bucket ^ (int) (fingerprint * 0x5BD1E995L)) & mask;
+    }
+
+    private int nextVictim() {
+        victimSeed ^= victimSeed << 13;
+        victimSeed ^= victimSeed >>> 17;
+        victimSeed ^= victimSeed << 5;
+        return victimSeed & (SLOTS - 1);
+    }
+
+    private static long hash(int key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ h >>> 32;
+    }
+
+    // Never 0, which marks an empty slot
+    private static long fingerprint(long hash) {
+        long fingerprint = hash >>> 48;
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+}
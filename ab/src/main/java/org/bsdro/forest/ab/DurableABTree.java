@@ -0,0 +1,319 @@
+package org.bsdro.forest.ab;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * {@link ABTree} whose changes survive a restart. Every insert and remove that changes the key set is appended to
+ * a {@link WriteAheadLog} and is durable when the call returns; concurrent callers share one fsync through group
+ * commit. A change reaches the tree only once its record is durable, and in log order, so readers and checkpoints
+ * never see a key that a crash could still lose. After {@code checkpointInterval} logged operations the key set
+ * is written to a checkpoint file and the log segments it covers are deleted. Opening a directory loads the
+ * latest checkpoint with {@link ABTree#bulkLoad(int[])} and replays the log after it.
+ */
+public class DurableABTree implements Closeable {
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
+
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String CHECKPOINT_TEMP = "checkpoint.tmp";
+    private static final int MAGIC = 0x41424350; // "ABCP"
+
+    private final Path directory;
+    private final ABTree tree;
+    private final WriteAheadLog log;
+    private final long checkpointInterval;
+    private final Object checkpointLock = new Object();
+    private final Map<Integer, Long> pending = new HashMap<>(); // key -> lsn << 1 | insert bit of its latest record
+    private final ArrayDeque<Long> unapplied = new ArrayDeque<>(); // key << 1 | insert bit, records after appliedLsn
+    private long checkpointLsn;
+    private long appliedLsn; // last record applied to the tree
+
+    private DurableABTree(Path directory, ABTree tree, WriteAheadLog log, long checkpointLsn,
+                          long checkpointInterval) {
+        this.directory = directory;
+        this.tree = tree;
+        this.log = log;
+        this.checkpointLsn = checkpointLsn;
+        this.checkpointInterval = checkpointInterval;
+        this.appliedLsn = log.nextLsn() - 1;
+    }
+
+    public static DurableABTree open(Path directory, int a, int b) {
+        return open(directory, a, b, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Opens the tree stored in {@code directory}, creating the directory if needed, and recovers its contents.
+     */
+    public static DurableABTree open(Path directory, int a, int b, long checkpointInterval) {
+        if (checkpointInterval < 1) throw new IllegalArgumentException("Require checkpointInterval >= 1");
+        ABTree tree = new ABTree(a, b);
+        long checkpointLsn = 0;
+        try {
+            Files.createDirectories(directory);
+            Path checkpoint = directory.resolve(CHECKPOINT);
+            if (Files.exists(checkpoint)) {
+                checkpointLsn = readCheckpoint(checkpoint, tree);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long nextLsn = WriteAheadLog.replay(directory, checkpointLsn, (op, key) -> {
+            if (op == WriteAheadLog.INSERT) {
+                tree.insert(key);
+            } else {
+                tree.remove(key);
+            }
+        });
+        WriteAheadLog log = new WriteAheadLog(directory, nextLsn);
+        return new DurableABTree(directory, tree, log, checkpointLsn, checkpointInterval);
+    }
+
+    public synchronized boolean contains(int key) {
+        return tree.contains(key);
+    }
+
+    public void insert(int key) {
+        long lsn;
+        synchronized (this) {
+            if (present(key)) {
+                return;
+            }
+            lsn = log.append(WriteAheadLog.INSERT, key);
+            pending.put(key, lsn << 1 | 1);
+            unapplied.add((long) key << 1 | 1);
+        }
+        commit(lsn, WriteAheadLog.INSERT, key);
+    }
+
+    public boolean remove(int key) {
+        long lsn;
+        synchronized (this) {
+            if (!present(key)) {
+                return false;
+            }
+            lsn = log.append(WriteAheadLog.REMOVE, key);
+            pending.put(key, lsn << 1);
+            unapplied.add((long) key << 1);
+        }
+        commit(lsn, WriteAheadLog.REMOVE, key);
+        return true;
+    }
+
+    // Whether the key is in the tree once every record logged so far is applied
+    private boolean present(int key) {
+        Long latest = pending.get(key);
+        return latest != null ? (latest & 1) != 0 : tree.contains(key);
+    }
+
+    public synchronized void forEach(IntConsumer action) {
+        tree.forEach(action);
+    }
+
+    long syncs() {
+        return log.syncs;
+    }
+
+    // Waits for the record to be durable and applies it with every durable record before it. A sync only fails
+    // once the log is unusable, then no record from the failed batch on ever becomes durable or reaches the tree
+    private void commit(long lsn, byte op, int key) {
+        try {
+            log.sync(lsn);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending.remove(key, lsn << 1 | (op == WriteAheadLog.INSERT ? 1 : 0));
+            }
+            throw e;
+        }
+        applyDurable();
+        if (lsn - checkpointLsn() >= checkpointInterval) {
+            synchronized (checkpointLock) {
+                // Threads crossing the interval together write a single checkpoint
+                if (lsn - checkpointLsn() >= checkpointInterval) {
+                    checkpoint();
+                }
+            }
+        }
+    }
+
+    private synchronized long checkpointLsn() {
+        return checkpointLsn;
+    }
+
+    // Applies the durable records in log order, whichever thread logged them, so no record waits for the thread
+    // that logged the one before it
+    private synchronized void applyDurable() {
+        long durableLsn = log.durableLsn();
+        while (appliedLsn < durableLsn) {
+            long record = unapplied.remove();
+            int key = (int) (record >> 1);
+            if ((record & 1) != 0) {
+                tree.insert(key);
+            } else {
+                tree.remove(key);
+            }
+            appliedLsn++;
+            pending.remove(key, appliedLsn << 1 | (record & 1));
+        }
+    }
+
+    /**
+     * Writes the current keys to a new checkpoint and deletes the log segments it makes obsolete. Other operations
+     * wait while the log moves to a new segment, which forces the records logged since the checkpoint began, and
+     * while the keys are copied. The checkpoint file is written outside the tree lock.
+     */
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            int[] keys;
+            long lsn;
+            // Most records are forced here, before the tree lock, and the rotation below only forces the rest
+            log.sync(log.nextLsn() - 1);
+            synchronized (this) {
+                if (log.nextLsn() == checkpointLsn) {
+                    return;
+                }
+                lsn = log.rotate();
+                applyDurable();
+                IntStream.Builder builder = IntStream.builder();
+                tree.forEach(builder);
+                keys = builder.build().toArray();
+                checkpointLsn = lsn;
+            }
+            writeCheckpoint(keys, lsn);
+            log.deleteSegmentsBefore(lsn);
+        }
+    }
+
+    private void writeCheckpoint(int[] keys, long lsn) {
+        Path temp = directory.resolve(CHECKPOINT_TEMP);
+        try {
+            retryOnInterrupt(() -> {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    CRC32 crc = new CRC32();
+                    DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel)), crc));
+                    out.writeInt(MAGIC);
+                    out.writeLong(lsn);
+                    out.writeInt(keys.length);
+                    // Keys are ascending, so their gaps are small non-negative numbers in most trees
+                    int previous = 0;
+                    for (int key : keys) {
+                        writeVarInt(out, key - previous);
+                        previous = key;
+                    }
+                    out.writeInt((int) crc.getValue());
+                    out.flush();
+                    channel.force(true);
+                }
+            });
+            Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long readCheckpoint(Path checkpoint, ABTree tree) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(checkpoint)), crc))) {
+            if (in.readInt() != MAGIC) throw new IllegalStateException("Not a checkpoint file: " + checkpoint);
+            long lsn = in.readLong();
+            int[] keys = new int[in.readInt()];
+            int previous = 0;
+            for (int i = 0; i < keys.length; i++) {
+                previous += readVarInt(in);
+                keys[i] = previous;
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) throw new IllegalStateException("Corrupt checkpoint file: " + checkpoint);
+            tree.bulkLoad(keys);
+            return lsn;
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    // Makes file creations, renames and deletions in the directory durable
+    static void forceDirectory(Path directory) {
+        try {
+            retryOnInterrupt(() -> {
+                try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                    channel.force(true);
+                }
+            });
+        } catch (IOException e) {
+            // Some platforms cannot open or force directories, file contents are still forced
+        }
+    }
+
+    interface FileAction {
+        void run() throws IOException;
+    }
+
+    // Runs the action again when an interrupt closes its channel, and restores the interrupt afterwards, so that
+    // an interrupted writer still leaves complete files behind
+    static void retryOnInterrupt(FileAction action) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    action.run();
+                    return;
+                } catch (ClosedByInterruptException e) {
+                    interrupted |= Thread.interrupted();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (checkpointLock) {
+            log.close();
+        }
+    }
+}
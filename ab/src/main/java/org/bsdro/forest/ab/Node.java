@@ -1,11 +1,55 @@
 package org.bsdro.forest.ab;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 abstract class Node {
-    List<Integer> keys = new ArrayList<>();
+    final int[] keys;
+    int keyCount;
+
+    Node(int b) {
+        this(new int[b - 1]);
+    }
+
+    // For nodes that keep their keys in another form and override the key methods below
+    Node(int[] keys) {
+        this.keys = keys;
+    }
 
     abstract boolean isLeaf();
-}
 
+    int search(int key) {
+        if (keyCount >= NodeSearch.VECTOR_MIN_KEYS && NodeSearch.VECTOR != null) {
+            return NodeSearch.VECTOR.search(keys, keyCount, key);
+        }
+        return Arrays.binarySearch(keys, 0, keyCount, key);
+    }
+
+    int keyAt(int index) {
+        return keys[index];
+    }
+
+    int firstKey() {
+        return keys[0];
+    }
+
+    int lastKey() {
+        return keys[keyCount - 1];
+    }
+
+    void insertKey(int index, int key) {
+        System.arraycopy(keys, index, keys, index + 1, keyCount - index);
+        keys[index] = key;
+        keyCount++;
+    }
+
+    int removeKey(int index) {
+        int key = keys[index];
+        System.arraycopy(keys, index + 1, keys, index, keyCount - index - 1);
+        keyCount--;
+        return key;
+    }
+
+    String keysToString() {
+        return Arrays.toString(Arrays.copyOf(keys, keyCount));
+    }
+}
@@ -0,0 +1,32 @@
+package org.bsdro.forest.ab;
+
+/**
+ * Search kernel for the sorted keys of a node, with the result convention of
+ * {@link java.util.Arrays#binarySearch(int[], int, int, int)}.
+ */
+interface NodeSearch {
+    /**
+     * Nodes with fewer keys use binary search, set with {@code -Dorg.bsdro.forest.ab.vectorSearchMinKeys}.
+     * The default is where the vector kernel starts to win in {@code NodeSearchBenchmark}.
+     */
+    int VECTOR_MIN_KEYS = Integer.getInteger("org.bsdro.forest.ab.vectorSearchMinKeys", 16);
+
+    /**
+     * The vector kernel, or null if the JVM was started without {@code --add-modules jdk.incubator.vector}.
+     */
+    NodeSearch VECTOR = loadVector();
+
+    int search(int[] keys, int count, int key);
+
+    private static NodeSearch loadVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (NodeSearch) Class.forName("org.bsdro.forest.ab.VectorNodeSearch").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
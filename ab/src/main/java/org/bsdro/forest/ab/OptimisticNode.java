@@ -0,0 +1,92 @@
+package org.bsdro.forest.ab;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Node of a {@link ConcurrentABTree}. Besides keys and children it carries a version word for optimistic lock
+ * coupling: readers take a snapshot of the version, read without locking and validate that the version is
+ * unchanged afterwards. Writers lock by setting {@link #LOCKED} with a CAS from a validated snapshot, so
+ * acquiring a lock never waits and every change bumps the version.
+ */
+final class OptimisticNode extends Node {
+    static final long RESTART = -1;
+    static final long OBSOLETE = 1;
+    static final long LOCKED = 2;
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(OptimisticNode.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long version;
+    final OptimisticNode[] children; // null for leaves
+    int childCount;
+
+    OptimisticNode(int b, boolean leaf) {
+        super(b);
+        this.children = leaf ? null : new OptimisticNode[b];
+    }
+
+    @Override
+    boolean isLeaf() {
+        return children == null;
+    }
+
+    /**
+     * Version to validate later reads against, or {@link #RESTART} if the node is locked or no longer in the tree.
+     */
+    long readLock() {
+        long v = version;
+        if ((v & (LOCKED | OBSOLETE)) != 0) {
+            Thread.onSpinWait();
+            return RESTART;
+        }
+        return v;
+    }
+
+    boolean validate(long v) {
+        VarHandle.acquireFence();
+        return version == v;
+    }
+
+    boolean tryUpgrade(long v) {
+        return VERSION.compareAndSet(this, v, v + LOCKED);
+    }
+
+    void writeUnlock() {
+        version += LOCKED;
+    }
+
+    void writeUnlockObsolete() {
+        version += LOCKED | OBSOLETE;
+    }
+
+    void insertChild(int index, OptimisticNode child) {
+        System.arraycopy(children, index, children, index + 1, childCount - index);
+        children[index] = child;
+        childCount++;
+    }
+
+    // Appends the children from index on to target
+    void moveChildren(int from, OptimisticNode target) {
+        int moved = childCount - from;
+        System.arraycopy(children, from, target.children, target.childCount, moved);
+        Arrays.fill(children, from, childCount, null);
+        target.childCount += moved;
+        childCount = from;
+    }
+
+    OptimisticNode removeChild(int index) {
+        OptimisticNode child = children[index];
+        System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+        children[--childCount] = null;
+        return child;
+    }
+}
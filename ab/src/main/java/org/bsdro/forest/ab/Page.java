@@ -0,0 +1,134 @@
+package org.bsdro.forest.ab;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Buffer pool frame holding one node page. The layout is a leaf flag, the key count, the child count, then
+ * room for b - 1 keys and b child page ids.
+ */
+final class Page {
+    private static final int LEAF = 0;
+    private static final int KEY_COUNT = 4;
+    private static final int CHILD_COUNT = 8;
+    private static final int KEYS = 12;
+
+    static int maxB(int pageSize) {
+        return (pageSize - KEYS + 4) / 8;
+    }
+
+    final ByteBuffer buffer;
+    private final int childrenOffset;
+
+    // Frame bookkeeping, owned by the BufferPool
+    int pageId = -1;
+    int pinCount;
+    boolean dirty;
+    boolean referenced;
+
+    Page(ByteBuffer buffer, int b) {
+        this.buffer = buffer;
+        this.childrenOffset = KEYS + 4 * (b - 1);
+    }
+
+    void init(boolean leaf) {
+        buffer.putInt(LEAF, leaf ? 1 : 0);
+        buffer.putInt(KEY_COUNT, 0);
+        buffer.putInt(CHILD_COUNT, 0);
+        dirty = true;
+    }
+
+    boolean isLeaf() {
+        return buffer.getInt(LEAF) != 0;
+    }
+
+    int keyCount() {
+        return buffer.getInt(KEY_COUNT);
+    }
+
+    void setKeyCount(int keyCount) {
+        buffer.putInt(KEY_COUNT, keyCount);
+        dirty = true;
+    }
+
+    int childCount() {
+        return buffer.getInt(CHILD_COUNT);
+    }
+
+    void setChildCount(int childCount) {
+        buffer.putInt(CHILD_COUNT, childCount);
+        dirty = true;
+    }
+
+    int key(int index) {
+        return buffer.getInt(KEYS + 4 * index);
+    }
+
+    void setKey(int index, int key) {
+        buffer.putInt(KEYS + 4 * index, key);
+        dirty = true;
+    }
+
+    int child(int index) {
+        return buffer.getInt(childrenOffset + 4 * index);
+    }
+
+    void setChild(int index, int pageId) {
+        buffer.putInt(childrenOffset + 4 * index, pageId);
+        dirty = true;
+    }
+
+    int search(int key) {
+        int low = 0;
+        int high = keyCount() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = key(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    void insertKey(int index, int key) {
+        int keyCount = keyCount();
+        for (int i = keyCount; i > index; i--) {
+            setKey(i, key(i - 1));
+        }
+        setKey(index, key);
+        setKeyCount(keyCount + 1);
+    }
+
+    int removeKey(int index) {
+        int keyCount = keyCount();
+        int key = key(index);
+        for (int i = index; i < keyCount - 1; i++) {
+            setKey(i, key(i + 1));
+        }
+        setKeyCount(keyCount - 1);
+        return key;
+    }
+
+    void insertChild(int index, int pageId) {
+        int childCount = childCount();
+        for (int i = childCount; i > index; i--) {
+            setChild(i, child(i - 1));
+        }
+        setChild(index, pageId);
+        setChildCount(childCount + 1);
+    }
+
+    int removeChild(int index) {
+        int childCount = childCount();
+        int pageId = child(index);
+        for (int i = index; i < childCount - 1; i++) {
+            setChild(i, child(i + 1));
+        }
+        setChildCount(childCount - 1);
+        return pageId;
+    }
+}
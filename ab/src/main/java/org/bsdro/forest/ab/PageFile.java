@@ -0,0 +1,81 @@
+package org.bsdro.forest.ab;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File of fixed-size pages accessed through a {@link FileChannel}. Pages past the end of the file read as zeros.
+ */
+final class PageFile implements Closeable {
+    private final FileChannel channel;
+    final int pageSize;
+
+    PageFile(Path path, int pageSize) {
+        this.pageSize = pageSize;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    boolean isEmpty() {
+        try {
+            return channel.size() == 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void read(int pageId, ByteBuffer page) {
+        long position = (long) pageId * pageSize;
+        try {
+            for (int offset = 0; offset < pageSize; ) {
+                int n = channel.read(page.slice(offset, pageSize - offset), position + offset);
+                if (n < 0) {
+                    for (int i = offset; i < pageSize; i++) {
+                        page.put(i, (byte) 0);
+                    }
+                    return;
+                }
+                offset += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void write(int pageId, ByteBuffer page) {
+        long position = (long) pageId * pageSize;
+        try {
+            for (int offset = 0; offset < pageSize; ) {
+                offset += channel.write(page.slice(offset, pageSize - offset), position + offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package org.bsdro.forest.ab;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Disk-resident (a,b)-tree. Every node is a fixed-size page of a file and only a bounded {@link BufferPool} of
+ * pages is held in memory, so the tree can be far larger than the heap. The algorithms are those of
+ * {@link ABTree}: splits and refills happen on the way down, so an operation pins at most a handful of pages
+ * at a time and reads a number of pages bounded by the tree height. Changes reach the file when dirty pages
+ * are evicted, and all of them on {@link #flush()} or {@link #close()}.
+ */
+public class PagedABTree implements Closeable {
+    private static final int MAGIC = 0x41425046; // "ABPF"
+    private static final int META_PAGE = 0;
+    private static final int NO_PAGE = -1;
+
+    private final int a; // min children
+    private final int b; // max children
+    private final PageFile file;
+    private final BufferPool pool;
+    private int root;
+    private int pageCount;
+    private int freeList = NO_PAGE;
+
+    private PagedABTree(int a, int b, PageFile file, int bufferPages) {
+        this.a = a;
+        this.b = b;
+        this.file = file;
+        this.pool = new BufferPool(file, bufferPages, b);
+    }
+
+    /**
+     * Opens the tree stored in {@code path}, creating an empty one if the file is empty or missing.
+     *
+     * @param pageSize    bytes per page, must hold b - 1 keys and b child ids, see {@link #maxB(int)}
+     * @param bufferPages number of pages cached in memory, at least 8 and at most 2 GiB of them in total
+     */
+    public static PagedABTree open(Path path, int a, int b, int pageSize, int bufferPages) {
+        if (a < 2 || a > b / 2) throw new IllegalArgumentException("Require 2 <= a <= b/2");
+        if (b > maxB(pageSize)) {
+            throw new IllegalArgumentException("Require b <= " + maxB(pageSize) + " for this page size");
+        }
+        if (bufferPages < 8) throw new IllegalArgumentException("Require bufferPages >= 8");
+        if ((long) bufferPages * pageSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Require bufferPages * pageSize <= " + Integer.MAX_VALUE);
+        }
+        PageFile file = new PageFile(path, pageSize);
+        PagedABTree tree = new PagedABTree(a, b, file, bufferPages);
+        if (file.isEmpty()) {
+            tree.pageCount = 1;
+            Page rootPage = tree.allocate(true);
+            tree.root = rootPage.pageId;
+            tree.pool.unpin(rootPage);
+            tree.flush();
+        } else {
+            try {
+                tree.readMeta(pageSize);
+            } catch (RuntimeException e) {
+                file.close();
+                throw e;
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Largest b whose nodes fit in one page of the given size.
+     */
+    public static int maxB(int pageSize) {
+        return Page.maxB(pageSize);
+    }
+
+    long pageReads() {
+        return pool.pageReads;
+    }
+
+    public boolean contains(int key) {
+        int pageId = root;
+        while (true) {
+            Page node = pool.pin(pageId);
+            try {
+                int i = node.search(key);
+                if (i >= 0) {
+                    return true;
+                }
+                if (node.isLeaf()) {
+                    return false;
+                }
+                pageId = node.child(Math.min(-i - 1, node.childCount() - 1));
+            } finally {
+                pool.unpin(node);
+            }
+        }
+    }
+
+    public void insert(int key) {
+        Page node = pool.pin(root);
+        if (isFull(node)) {
+            Page newRoot = allocate(false);
+            newRoot.insertChild(0, node.pageId);
+            splitChild(newRoot, 0, node);
+            root = newRoot.pageId;
+            pool.unpin(node);
+            node = newRoot;
+        }
+        while (true) {
+            int i = node.search(key);
+            if (node.isLeaf() || i >= 0) {
+                if (i < 0) {
+                    node.insertKey(-i - 1, key);
+                }
+                pool.unpin(node);
+                return;
+            }
+            i = Math.min(-i - 1, node.childCount() - 1);
+            Page child = pool.pin(node.child(i));
+            if (isFull(child)) {
+                splitChild(node, i, child);
+                if (key == node.key(i)) {
+                    pool.unpin(child);
+                    pool.unpin(node);
+                    return;
+                }
+                if (key > node.key(i)) {
+                    pool.unpin(child);
+                    child = pool.pin(node.child(i + 1));
+                }
+            }
+            pool.unpin(node);
+            node = child;
+        }
+    }
+
+    private void splitChild(Page parent, int index, Page fullNode) {
+        Page newNode = allocate(fullNode.isLeaf());
+        int keyCount = fullNode.keyCount();
+        int mid = keyCount / 2;
+
+        // Promote middle key of fullNode to parent, the keys after it move to newNode
+        int separator = fullNode.key(mid);
+        for (int i = mid + 1; i < keyCount; i++) {
+            newNode.setKey(i - mid - 1, fullNode.key(i));
+        }
+        newNode.setKeyCount(keyCount - mid - 1);
+        fullNode.setKeyCount(mid);
+
+        if (!fullNode.isLeaf()) {
+            int childCount = fullNode.childCount();
+            for (int i = mid + 1; i < childCount; i++) {
+                newNode.setChild(i - mid - 1, fullNode.child(i));
+            }
+            newNode.setChildCount(childCount - mid - 1);
+            fullNode.setChildCount(mid + 1);
+        }
+
+        parent.insertKey(index, separator);
+        parent.insertChild(index + 1, newNode.pageId);
+        pool.unpin(newNode);
+    }
+
+    private boolean isFull(Page node) {
+        return node.keyCount() >= b - 1;
+    }
+
+    public boolean remove(int key) {
+        if (!contains(key)) {
+            return false;
+        }
+
+        Page node = pool.pin(root);
+        while (true) {
+            int i = node.search(key);
+            if (node.isLeaf()) {
+                // Key found in leaf node, remove it
+                node.removeKey(i);
+                pool.unpin(node);
+                break;
+            }
+
+            if (i >= 0) {
+                // Key found in internal node, replace it by its predecessor or successor or merge around it
+                Page leftChild = pool.pin(node.child(i));
+                if (leftChild.keyCount() >= a) {
+                    key = findLargestKey(leftChild.pageId);
+                    node.setKey(i, key);
+                    pool.unpin(node);
+                    node = leftChild;
+                    continue;
+                }
+                Page rightChild = pool.pin(node.child(i + 1));
+                if (rightChild.keyCount() >= a) {
+                    key = findSmallestKey(rightChild.pageId);
+                    node.setKey(i, key);
+                    pool.unpin(leftChild);
+                    pool.unpin(node);
+                    node = rightChild;
+                    continue;
+                }
+                mergeNodes(node, i, leftChild, rightChild);
+                pool.unpin(node);
+                node = leftChild;
+                continue;
+            }
+
+            // Ensure the child has at least 'a' keys before descending
+            int childIndex = Math.min(-i - 1, node.childCount() - 1);
+            Page child = pool.pin(node.child(childIndex));
+            if (child.keyCount() < a) {
+                pool.unpin(child);
+                ensureChildHasMinKeys(node, childIndex);
+                childIndex = Math.min(-node.search(key) - 1, node.childCount() - 1);
+                child = pool.pin(node.child(childIndex));
+            }
+            pool.unpin(node);
+            node = child;
+        }
+
+        // If root is an inner node with no keys and only one child, make that child the new root
+        Page rootPage = pool.pin(root);
+        if (!rootPage.isLeaf() && rootPage.keyCount() == 0 && rootPage.childCount() == 1) {
+            int newRoot = rootPage.child(0);
+            pool.unpin(rootPage);
+            release(root);
+            root = newRoot;
+        } else {
+            pool.unpin(rootPage);
+        }
+        return true;
+    }
+
+    private int findLargestKey(int pageId) {
+        while (true) {
+            Page node = pool.pin(pageId);
+            try {
+                if (node.isLeaf()) {
+                    return node.key(node.keyCount() - 1);
+                }
+                pageId = node.child(node.childCount() - 1);
+            } finally {
+                pool.unpin(node);
+            }
+        }
+    }
+
+    private int findSmallestKey(int pageId) {
+        while (true) {
+            Page node = pool.pin(pageId);
+            try {
+                if (node.isLeaf()) {
+                    return node.key(0);
+                }
+                pageId = node.child(0);
+            } finally {
+                pool.unpin(node);
+            }
+        }
+    }
+
+    // Moves the separator and all of rightChild into leftChild, then frees the right page
+    private void mergeNodes(Page parent, int index, Page leftChild, Page rightChild) {
+        int leftKeys = leftChild.keyCount();
+        int rightKeys = rightChild.keyCount();
+        leftChild.setKey(leftKeys, parent.removeKey(index));
+        for (int i = 0; i < rightKeys; i++) {
+            leftChild.setKey(leftKeys + 1 + i, rightChild.key(i));
+        }
+        leftChild.setKeyCount(leftKeys + 1 + rightKeys);
+
+        if (!leftChild.isLeaf()) {
+            int leftChildren = leftChild.childCount();
+            int rightChildren = rightChild.childCount();
+            for (int i = 0; i < rightChildren; i++) {
+                leftChild.setChild(leftChildren + i, rightChild.child(i));
+            }
+            leftChild.setChildCount(leftChildren + rightChildren);
+        }
+
+        parent.removeChild(index + 1);
+        int rightPage = rightChild.pageId;
+        pool.unpin(rightChild);
+        release(rightPage);
+    }
+
+    private void ensureChildHasMinKeys(Page parent, int childIndex) {
+        Page child = pool.pin(parent.child(childIndex));
+        try {
+            // Try to borrow from left sibling
+            if (childIndex > 0) {
+                Page leftSibling = pool.pin(parent.child(childIndex - 1));
+                if (leftSibling.keyCount() >= a) {
+                    borrowFromLeftSibling(parent, childIndex, child, leftSibling);
+                    pool.unpin(leftSibling);
+                    return;
+                }
+                if (childIndex == parent.childCount() - 1) {
+                    // Merge with left sibling, no right sibling to try
+                    mergeNodes(parent, childIndex - 1, leftSibling, child);
+                    pool.unpin(leftSibling);
+                    child = null;
+                    return;
+                }
+                pool.unpin(leftSibling);
+            }
+
+            // Try to borrow from right sibling
+            Page rightSibling = pool.pin(parent.child(childIndex + 1));
+            if (rightSibling.keyCount() >= a) {
+                borrowFromRightSibling(parent, childIndex, child, rightSibling);
+                pool.unpin(rightSibling);
+                return;
+            }
+
+            // Merge with a sibling
+            if (childIndex > 0) {
+                pool.unpin(rightSibling);
+                Page leftSibling = pool.pin(parent.child(childIndex - 1));
+                mergeNodes(parent, childIndex - 1, leftSibling, child);
+                pool.unpin(leftSibling);
+                child = null;
+            } else {
+                mergeNodes(parent, childIndex, child, rightSibling);
+            }
+        } finally {
+            if (child != null) {
+                pool.unpin(child);
+            }
+        }
+    }
+
+    private void borrowFromLeftSibling(Page parent, int childIndex, Page child, Page leftSibling) {
+        // Move separator key from parent to child
+        child.insertKey(0, parent.key(childIndex - 1));
+
+        // Move largest key from left sibling to parent
+        int leftKeys = leftSibling.keyCount();
+        parent.setKey(childIndex - 1, leftSibling.key(leftKeys - 1));
+        leftSibling.setKeyCount(leftKeys - 1);
+
+        // If these are inner nodes, move the rightmost child of left sibling to child
+        if (!child.isLeaf()) {
+            child.insertChild(0, leftSibling.removeChild(leftSibling.childCount() - 1));
+        }
+    }
+
+    private void borrowFromRightSibling(Page parent, int childIndex, Page child, Page rightSibling) {
+        // Move separator key from parent to child
+        child.setKey(child.keyCount(), parent.key(childIndex));
+        child.setKeyCount(child.keyCount() + 1);
+
+        // Move smallest key from right sibling to parent
+        parent.setKey(childIndex, rightSibling.removeKey(0));
+
+        // If these are inner nodes, move the leftmost child of right sibling to child
+        if (!child.isLeaf()) {
+            child.insertChild(child.childCount(), rightSibling.removeChild(0));
+        }
+    }
+
+    // Returns a pinned, initialized page, reusing a freed one when available
+    private Page allocate(boolean leaf) {
+        Page page;
+        if (freeList != NO_PAGE) {
+            page = pool.pin(freeList);
+            freeList = page.buffer.getInt(0);
+        } else {
+            page = pool.pinNew(pageCount++);
+        }
+        page.init(leaf);
+        return page;
+    }
+
+    // Puts the page on the free list, whose links live in the first word of each free page
+    private void release(int pageId) {
+        Page page = pool.pin(pageId);
+        page.buffer.putInt(0, freeList);
+        page.dirty = true;
+        pool.unpin(page);
+        freeList = pageId;
+    }
+
+    /**
+     * Writes all dirty pages and the tree header and forces them to the storage device.
+     */
+    public void flush() {
+        pool.flush();
+        ByteBuffer meta = ByteBuffer.allocate(file.pageSize);
+        meta.putInt(MAGIC).putInt(file.pageSize).putInt(a).putInt(b).putInt(root).putInt(pageCount).putInt(freeList);
+        file.write(META_PAGE, meta.clear());
+        file.force();
+    }
+
+    private void readMeta(int pageSize) {
+        ByteBuffer meta = ByteBuffer.allocate(pageSize);
+        file.read(META_PAGE, meta);
+        if (meta.getInt() != MAGIC) throw new IllegalArgumentException("Not a paged (a,b)-tree file");
+        if (meta.getInt() != pageSize || meta.getInt() != a || meta.getInt() != b) {
+            throw new IllegalArgumentException("File was created with a different page size or (a,b)");
+        }
+        root = meta.getInt();
+        pageCount = meta.getInt();
+        freeList = meta.getInt();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        file.close();
+    }
+}
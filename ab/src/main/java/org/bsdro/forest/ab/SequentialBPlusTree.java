@@ -0,0 +1,117 @@
+package org.bsdro.forest.ab;
+
+/**
+ * Single-threaded {@link BPlusTree} over {@link ABTreeInnerNode}s. As in {@link ABTree}, full nodes are split and
+ * minimal nodes are refilled on the way down, so a change at the leaf never propagates upwards.
+ */
+abstract class SequentialBPlusTree extends BPlusTree<Node> {
+
+    Node root;
+
+    SequentialBPlusTree(int a, int b) {
+        super(a, b);
+    }
+
+    Node root() {
+        return root;
+    }
+
+    @Override
+    Node newInnerNode() {
+        return new ABTreeInnerNode(b);
+    }
+
+    @Override
+    Node child(Node parent, int index) {
+        return ((ABTreeInnerNode) parent).children[index];
+    }
+
+    @Override
+    int childCount(Node node) {
+        return ((ABTreeInnerNode) node).childCount;
+    }
+
+    @Override
+    void insertChild(Node parent, int index, Node child) {
+        ((ABTreeInnerNode) parent).insertChild(index, child);
+    }
+
+    @Override
+    Node removeChild(Node parent, int index) {
+        return ((ABTreeInnerNode) parent).removeChild(index);
+    }
+
+    @Override
+    void moveChildren(Node source, int from, Node target) {
+        ((ABTreeInnerNode) source).moveChildren(from, (ABTreeInnerNode) target);
+    }
+
+    Node findLeaf(int key) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            node = innerNode.children[findChildIndex(innerNode, key)];
+        }
+        return node;
+    }
+
+    // Descends to the leaf of the key, splitting full nodes on the way so the leaf has room for one more key
+    Node findLeafForInsert(int key) {
+        if (isFull(root)) {
+            ABTreeInnerNode newRoot = new ABTreeInnerNode(b);
+            newRoot.insertChild(0, root);
+            splitChild(newRoot, 0);
+            root = newRoot;
+        }
+        Node node = root;
+        while (!node.isLeaf()) {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            int i = findChildIndex(innerNode, key);
+            if (isFull(innerNode.children[i])) {
+                splitChild(innerNode, i);
+                if (key >= innerNode.keys[i]) {
+                    i++;
+                }
+            }
+            node = innerNode.children[i];
+        }
+        return node;
+    }
+
+    // Descends to the leaf of the key, refilling nodes on the way so the leaf can lose a key
+    Node findLeafForRemove(int key) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+            int i = findChildIndex(innerNode, key);
+            // Ensure the child has at least 'a' keys before descending
+            if (innerNode.children[i].keyCount < a) {
+                ensureChildHasMinKeys(innerNode, i);
+                i = findChildIndex(innerNode, key);
+            }
+            node = innerNode.children[i];
+        }
+        // If root is an inner node with no keys and only one child, make that child the new root
+        if (!root.isLeaf() && root.keyCount == 0) {
+            root = ((ABTreeInnerNode) root).firstChild();
+        }
+        return node;
+    }
+
+    private void ensureChildHasMinKeys(ABTreeInnerNode parent, int childIndex) {
+        // Try to borrow from left sibling
+        if (childIndex > 0 && parent.children[childIndex - 1].keyCount >= a) {
+            borrowFromLeftSibling(parent, childIndex);
+            return;
+        }
+
+        // Try to borrow from right sibling
+        if (childIndex < parent.childCount - 1 && parent.children[childIndex + 1].keyCount >= a) {
+            borrowFromRightSibling(parent, childIndex);
+            return;
+        }
+
+        // Merge with a sibling
+        mergeNodes(parent, childIndex > 0 ? childIndex - 1 : childIndex);
+    }
+}
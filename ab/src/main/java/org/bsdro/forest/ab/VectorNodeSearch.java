@@ -0,0 +1,49 @@
+package org.bsdro.forest.ab;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Counts the keys below the probe a whole vector at a time. Wide nodes are first narrowed down by binary search
+ * to a window of a few vectors, which the kernel then scans without a data-dependent branch per key.
+ * Only loaded through {@link NodeSearch#VECTOR}, so the incubator module stays optional.
+ */
+final class VectorNodeSearch implements NodeSearch {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int WINDOW = 4 * SPECIES.length();
+
+    @Override
+    public int search(int[] keys, int count, int key) {
+        // The answer lies in [low, high]
+        int low = 0;
+        int high = count;
+        while (high - low > WINDOW) {
+            int mid = (low + high) >>> 1;
+            int midKey = keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid;
+            } else {
+                return mid;
+            }
+        }
+
+        IntVector probe = IntVector.broadcast(SPECIES, key);
+        int lanes = SPECIES.length();
+        int bound = low + SPECIES.loopBound(high - low);
+        int i = low;
+        for (; i < bound; i += lanes) {
+            // Keys are sorted, so the lanes below the probe form a prefix of the vector
+            int below = IntVector.fromArray(SPECIES, keys, i).lt(probe).trueCount();
+            if (below < lanes) {
+                i += below;
+                return i < count && keys[i] == key ? i : -(i + 1);
+            }
+        }
+        while (i < high && keys[i] < key) {
+            i++;
+        }
+        return i < count && keys[i] == key ? i : -(i + 1);
+    }
+}
@@ -0,0 +1,316 @@
+package org.bsdro.forest.ab;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of tree operations split into segment files named after the sequence number of their first
+ * record. Records are buffered in memory and made durable with group commit: a caller waiting for its record
+ * either finds it already forced by another caller, or writes and forces everything buffered so far with a
+ * single fsync. Interrupts do not abort a sync, they are kept for the caller to see once its record is durable.
+ */
+final class WriteAheadLog implements Closeable {
+    static final byte INSERT = 1;
+    static final byte REMOVE = 2;
+
+    private static final int RECORD_SIZE = 9; // op, key, CRC32 of op and key
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Receives replayed records in log order.
+     */
+    interface Replayer {
+        void apply(byte op, int key);
+    }
+
+    private final Path directory;
+    private FileChannel channel;
+    private long segmentStart;
+    private long segmentSize; // bytes written to the current segment by completed syncs
+    private ByteBuffer pending = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private long nextLsn;
+    private long durableLsn;
+    private boolean flushing;
+    private IOException failure;
+    long syncs;
+
+    /**
+     * Opens a new segment starting at {@code nextLsn}, all records before it must already be durable.
+     */
+    WriteAheadLog(Path directory, long nextLsn) {
+        this.directory = directory;
+        this.nextLsn = nextLsn;
+        this.durableLsn = nextLsn - 1;
+        openSegment(nextLsn);
+    }
+
+    /**
+     * Buffers a record and returns its sequence number, see {@link #sync(long)}.
+     */
+    synchronized long append(byte op, int key) {
+        if (pending.remaining() < RECORD_SIZE) {
+            pending = grow(pending);
+        }
+        int start = pending.position();
+        pending.put(op).putInt(key);
+        pending.putInt(checksum(pending, start));
+        return nextLsn++;
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is on stable storage.
+     */
+    void sync(long lsn) {
+        ByteBuffer batch;
+        FileChannel target;
+        long batchEnd;
+        synchronized (this) {
+            awaitFlush(() -> !flushing || durableLsn >= lsn);
+            if (durableLsn >= lsn) {
+                return;
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Log is unusable after an earlier write failure", failure);
+            }
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            spare = batch;
+            target = channel;
+            batchEnd = nextLsn - 1;
+        }
+        boolean written = false;
+        boolean interrupted = false;
+        try {
+            batch.flip();
+            int batchSize = batch.remaining();
+            while (true) {
+                try {
+                    if (target == null) {
+                        target = reopenSegment();
+                    }
+                    while (batch.hasRemaining()) {
+                        target.write(batch);
+                    }
+                    target.force(false);
+                    break;
+                } catch (ClosedByInterruptException e) {
+                    // The interrupt closed the channel, write the whole batch again to a fresh one
+                    interrupted |= Thread.interrupted();
+                    target = null;
+                    batch.rewind();
+                }
+            }
+            synchronized (this) {
+                segmentSize += batchSize;
+            }
+            written = true;
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+            throw new UncheckedIOException(e);
+        } finally {
+            synchronized (this) {
+                batch.clear();
+                flushing = false;
+                if (written) {
+                    durableLsn = batchEnd;
+                    syncs++;
+                }
+                notifyAll();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    synchronized long nextLsn() {
+        return nextLsn;
+    }
+
+    synchronized long durableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * Makes everything appended so far durable and continues in a new segment, returning its first sequence
+     * number. The caller must keep other threads from appending meanwhile.
+     */
+    long rotate() {
+        sync(nextLsn() - 1);
+        synchronized (this) {
+            awaitFlush(() -> !flushing);
+            closeChannel();
+            openSegment(nextLsn);
+            return nextLsn;
+        }
+    }
+
+    /**
+     * Deletes the segments that only hold records before {@code lsn}.
+     */
+    void deleteSegmentsBefore(long lsn) {
+        List<Long> starts = segments(directory);
+        for (int i = 0; i + 1 < starts.size() && starts.get(i + 1) <= lsn; i++) {
+            try {
+                Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Replays all records from {@code fromLsn} on and returns the sequence number following the last one. A torn
+     * record at the end of the last segment, left by a crash during a write, is cut off. Every earlier segment was
+     * forced before the next one was started, so a bad record there or a gap between segments means the log is
+     * damaged and nothing is replayed past it.
+     *
+     * @throws IllegalStateException if a record before the tail is corrupt or missing
+     */
+    static long replay(Path directory, long fromLsn, Replayer replayer) {
+        List<Long> starts = segments(directory);
+        long lsn = fromLsn;
+        boolean first = true;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (int s = 0; s < starts.size(); s++) {
+            long start = starts.get(s);
+            if (s + 1 < starts.size() && starts.get(s + 1) <= fromLsn) {
+                continue;
+            }
+            if (first ? start > fromLsn : start != lsn) {
+                throw new IllegalStateException("Log records " + lsn + " to " + (start - 1) + " are missing: "
+                        + directory);
+            }
+            first = false;
+            boolean last = s == starts.size() - 1;
+            Path path = segmentPath(directory, start);
+            try (FileChannel segment = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long recordLsn = start;
+                long position = 0;
+                long size = segment.size();
+                while (position < size) {
+                    record.clear();
+                    while (record.hasRemaining() && segment.read(record, position + record.position()) > 0) {
+                    }
+                    if (record.hasRemaining() || record.getInt(5) != checksum(record, 0)) {
+                        if (!last) {
+                            throw new IllegalStateException("Corrupt log record " + recordLsn + ": " + path);
+                        }
+                        segment.truncate(position);
+                        segment.force(false);
+                        break;
+                    }
+                    if (recordLsn >= fromLsn) {
+                        replayer.apply(record.get(0), record.getInt(1));
+                    }
+                    recordLsn++;
+                    position += RECORD_SIZE;
+                }
+                lsn = Math.max(lsn, recordLsn);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return lsn;
+    }
+
+    private static List<Long> segments(Path directory) {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), 16));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        starts.sort(null);
+        return starts;
+    }
+
+    private static Path segmentPath(Path directory, long start) {
+        return directory.resolve(String.format("%s%016x%s", PREFIX, start, SUFFIX));
+    }
+
+    // Makes the segment starting at start the one appended to
+    private void openSegment(long start) {
+        Path path = segmentPath(directory, start);
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            segmentStart = start;
+            segmentSize = Files.size(path);
+            DurableABTree.forceDirectory(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Replaces a channel closed by an interrupt during a flush, dropping whatever part of the batch it wrote
+    private synchronized FileChannel reopenSegment() throws IOException {
+        channel = FileChannel.open(segmentPath(directory, segmentStart), StandardOpenOption.WRITE);
+        channel.truncate(segmentSize);
+        channel.position(segmentSize);
+        return channel;
+    }
+
+    // Waits until the condition holds, an interrupt is kept for the caller instead of abandoning its record
+    private void awaitFlush(BooleanSupplier done) {
+        boolean interrupted = false;
+        while (!done.getAsBoolean()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int start) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(start, 5));
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        return larger.put(buffer.flip());
+    }
+
+    @Override
+    public void close() {
+        sync(nextLsn() - 1);
+        synchronized (this) {
+            awaitFlush(() -> !flushing);
+            closeChannel();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for the B+ layout of the (a,b)-tree
+ */
+public class ABPlusTreeTest extends TestCase {
+
+    private ABPlusTree tree;
+
+    @Override
+    protected void setUp() {
+        tree = new ABPlusTree(2, 4);
+    }
+
+    /**
+     * Test that every key stays in a leaf after splits
+     */
+    public void testKeysStayInLeaves() {
+        for (int key = 10; key <= 80; key += 10) {
+            tree.insert(key);
+        }
+        assertEquals(8, checkInvariants(tree, 2, 4));
+        assertEquals(Arrays.asList(10, 20, 30, 40, 50, 60, 70, 80), scan(tree, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Test scanning ranges whose bounds are and are not keys
+     */
+    public void testScanRange() {
+        for (int key = 0; key < 100; key += 5) {
+            tree.insert(key);
+        }
+        assertEquals(Arrays.asList(20, 25, 30), scan(tree, 20, 30));
+        assertEquals(Arrays.asList(25, 30), scan(tree, 21, 34));
+        assertEquals(Arrays.asList(95), scan(tree, 93, 1000));
+        assertTrue(scan(tree, 96, 1000).isEmpty());
+        assertTrue(scan(tree, 30, 20).isEmpty());
+        assertTrue(scan(tree, 21, 24).isEmpty());
+    }
+
+    /**
+     * Test that an exhausted cursor throws
+     */
+    public void testCursorExhausted() {
+        tree.insert(1);
+        ABTreeCursor cursor = tree.scan(0, 10);
+        assertEquals(1, cursor.nextInt());
+        assertFalse(cursor.hasNext());
+        try {
+            cursor.nextInt();
+            fail("Should throw NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test random inserts, removals and scans against a reference set
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        for (int[] params : new int[][]{{2, 4}, {3, 7}, {4, 16}}) {
+            ABPlusTree plus = new ABPlusTree(params[0], params[1]);
+            TreeSet<Integer> reference = new TreeSet<>();
+            Random random = new Random(3);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(2000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals("remove(" + key + ")", reference.remove(key), plus.remove(key));
+                } else {
+                    plus.insert(key);
+                    reference.add(key);
+                }
+                if (i % 1000 == 0) {
+                    assertEquals(reference.size(), checkInvariants(plus, params[0], params[1]));
+                    int from = random.nextInt(2000);
+                    int to = from + random.nextInt(300);
+                    assertEquals(new ArrayList<>(reference.subSet(from, true, to, true)), scan(plus, from, to));
+                }
+            }
+            for (int key = -1; key <= 2000; key++) {
+                assertEquals("contains(" + key + ")", reference.contains(key), plus.contains(key));
+            }
+            for (int key : new ArrayList<>(reference)) {
+                assertTrue(plus.remove(key));
+            }
+            assertEquals(0, checkInvariants(plus, params[0], params[1]));
+        }
+    }
+
+    static List<Integer> scan(ABPlusTree tree, int from, int to) {
+        List<Integer> keys = new ArrayList<>();
+        tree.scan(from, to).forEachRemaining((int key) -> keys.add(key));
+        return keys;
+    }
+
+    /**
+     * Checks the B+ invariants and the leaf chain and returns the number of keys.
+     */
+    static int checkInvariants(ABPlusTree tree, int a, int b) {
+        List<ABTreeLeaf> leaves = new ArrayList<>();
+        int[] depth = {-1};
+        int count = checkNode(tree.root(), tree.root(), a, b, Long.MIN_VALUE, Long.MAX_VALUE, 0, depth, leaves);
+        for (int i = 0; i < leaves.size(); i++) {
+            assertSame("Leaf chain", i + 1 < leaves.size() ? leaves.get(i + 1) : null, leaves.get(i).next);
+        }
+        return count;
+    }
+
+    private static int checkNode(Node node, Node root, int a, int b, long low, long high, int level, int[] leafDepth,
+                                 List<ABTreeLeaf> leaves) {
+        assertTrue("Too many keys", node.keyCount <= b - 1);
+        if (node != root) {
+            assertTrue("Too few keys: " + node.keysToString(), node.keyCount >= a - 1);
+        }
+        for (int i = 0; i < node.keyCount; i++) {
+            assertTrue("Key out of range", node.keys[i] >= low && node.keys[i] < high);
+            assertTrue("Keys not ascending", i == 0 || node.keys[i - 1] < node.keys[i]);
+        }
+        if (node.isLeaf()) {
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = level;
+            }
+            assertEquals("Leaves at different depths", leafDepth[0], level);
+            leaves.add((ABTreeLeaf) node);
+            return node.keyCount;
+        }
+        ABTreeInnerNode inner = (ABTreeInnerNode) node;
+        assertEquals("Child count", node.keyCount + 1, inner.childCount);
+        int count = 0;
+        for (int i = 0; i < inner.childCount; i++) {
+            long childLow = i == 0 ? low : node.keys[i - 1];
+            long childHigh = i == node.keyCount ? high : node.keys[i];
+            count += checkNode(inner.children[i], root, a, b, childLow, childHigh, level + 1, leafDepth, leaves);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,117 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Test class for the int to long map in B+ layout
+ */
+public class ABTreeMapTest extends TestCase {
+
+    private ABTreeMap map;
+
+    @Override
+    protected void setUp() {
+        map = new ABTreeMap(2, 4);
+    }
+
+    /**
+     * Test that put returns the previous value and get the current one
+     */
+    public void testPutAndGet() {
+        assertEquals(0, map.put(5, 50));
+        assertEquals(50, map.put(5, 55));
+        assertEquals(55, map.get(5));
+        assertEquals(0, map.get(6));
+        assertEquals(-1, map.getOrDefault(6, -1));
+        assertTrue(map.containsKey(5));
+        assertFalse(map.containsKey(6));
+        assertEquals(1, map.size());
+    }
+
+    /**
+     * Test that a custom missing value is reported for absent keys
+     */
+    public void testMissingValue() {
+        ABTreeMap custom = new ABTreeMap(2, 4, Long.MIN_VALUE);
+        assertEquals(Long.MIN_VALUE, custom.get(1));
+        assertEquals(Long.MIN_VALUE, custom.put(1, 0));
+        assertEquals(Long.MIN_VALUE, custom.remove(2));
+        assertEquals(0, custom.remove(1));
+    }
+
+    /**
+     * Test that computeIfAbsent only calls the mapping for absent keys
+     */
+    public void testComputeIfAbsent() {
+        int[] calls = {0};
+        for (int round = 0; round < 3; round++) {
+            for (int key = 0; key < 100; key++) {
+                assertEquals(key * 2L, map.computeIfAbsent(key, k -> {
+                    calls[0]++;
+                    return k * 2L;
+                }));
+            }
+        }
+        assertEquals(100, calls[0]);
+        assertEquals(100, map.size());
+    }
+
+    /**
+     * Test counting occurrences with merge
+     */
+    public void testMergeCounts() {
+        for (int i = 0; i < 1000; i++) {
+            map.merge(i % 7, 1, Long::sum);
+        }
+        assertEquals(143, map.get(0));
+        assertEquals(142, map.get(6));
+        assertEquals(7, map.size());
+    }
+
+    /**
+     * Test scanning a range of entries across leaves
+     */
+    public void testScan() {
+        for (int key = 0; key < 100; key += 2) {
+            map.put(key, -key);
+        }
+        List<String> entries = new ArrayList<>();
+        map.scan(11, 19, (key, value) -> entries.add(key + "=" + value));
+        assertEquals(List.of("12=-12", "14=-14", "16=-16", "18=-18"), entries);
+    }
+
+    /**
+     * Test random operations against a TreeMap, keeping values attached to their keys through splits and merges
+     */
+    public void testRandomOperationsMatchTreeMap() {
+        Random random = new Random(11);
+        TreeMap<Integer, Long> expected = new TreeMap<>();
+        ABTreeMap wide = new ABTreeMap(3, 7);
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(2000);
+            long value = random.nextLong();
+            switch (random.nextInt(3)) {
+                case 0:
+                    Long previous = expected.put(key, value);
+                    assertEquals(previous == null ? 0 : previous, wide.put(key, value));
+                    break;
+                case 1:
+                    Long removed = expected.remove(key);
+                    assertEquals(removed == null ? 0 : removed, wide.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.getOrDefault(key, 0L).longValue(), wide.get(key));
+            }
+        }
+        assertEquals(expected.size(), wide.size());
+        List<Map.Entry<Integer, Long>> entries = new ArrayList<>();
+        wide.forEach((key, value) -> entries.add(Map.entry(key, value)));
+        assertEquals(new ArrayList<>(expected.entrySet()), entries);
+    }
+}
@@ -0,0 +1,107 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Test class for the ABTree metrics
+ */
+public class ABTreeMetricsTest extends TestCase {
+
+    /**
+     * Test that metrics are off until enabled
+     */
+    public void testDisabledByDefault() {
+        ABTree tree = new ABTree(2, 4);
+        assertNull(tree.metrics());
+        ABTreeMetrics metrics = tree.enableMetrics();
+        assertSame(metrics, tree.enableMetrics());
+        tree.disableMetrics();
+        assertNull(tree.metrics());
+    }
+
+    /**
+     * Test that splits, merges, borrows and descents are counted
+     */
+    public void testStructuralCounters() {
+        ABTree tree = new ABTree(2, 4);
+        ABTreeMetrics metrics = tree.enableMetrics();
+        for (int key = 0; key < 100; key++) {
+            tree.insert(key);
+        }
+        assertEquals(100, metrics.descents());
+        assertTrue(metrics.splits() > 0);
+        assertEquals(0, metrics.merges());
+        long splits = metrics.splits();
+        for (int key = 0; key < 100; key++) {
+            tree.remove(key);
+        }
+        assertEquals(200, metrics.descents());
+        assertEquals(splits, metrics.splits());
+        assertTrue(metrics.merges() > 0);
+        assertTrue(metrics.borrows() > 0);
+        metrics.reset();
+        assertEquals(0, metrics.descents());
+    }
+
+    /**
+     * Test the height, node count and fill histogram gauges
+     */
+    public void testGauges() {
+        ABTree tree = new ABTree(2, 4);
+        ABTreeMetrics metrics = tree.enableMetrics();
+        assertEquals(1, metrics.height());
+        assertEquals(1, metrics.nodeCount());
+        int[] keys = new int[13];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        tree.bulkLoad(keys);
+        long[] histogram = metrics.fillHistogram();
+        assertEquals(4, histogram.length);
+        assertEquals(ABTreeTest.countNodes(tree.root()), metrics.nodeCount());
+        long keysInHistogram = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            keysInHistogram += i * histogram[i];
+        }
+        assertEquals(13, keysInHistogram);
+        // Full (2,4) nodes of 3 keys: 4 leaves under one root hold 15 keys
+        assertEquals(2, metrics.height());
+    }
+
+    /**
+     * Test that operations above the threshold reach Flight Recorder
+     */
+    public void testFlightRecorderEvents() throws IOException {
+        Path file = Files.createTempFile("abtree", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ABTreeOperationEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            ABTree tree = new ABTree(2, 4);
+            tree.insert(1);
+            tree.enableMetrics();
+            tree.insert(2);
+            tree.insert(3);
+            tree.insert(4);
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            events.removeIf(event -> !event.getEventType().getName().equals("org.bsdro.forest.ab.Operation"));
+            assertEquals(3, events.size());
+            assertEquals("insert", events.get(2).getString("operation"));
+            assertEquals(4, events.get(2).getInt("key"));
+            assertEquals(1, events.get(2).getInt("splits"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
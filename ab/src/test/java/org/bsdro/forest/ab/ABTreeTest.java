@@ -4,7 +4,11 @@ import junit.framework.TestCase;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
 
 /**
  * Test class for ABTree with a=2 and b=4
@@ -279,4 +283,398 @@ public class ABTreeTest extends TestCase {
         // The final tree should have fewer internal nodes
         assertTrue("Tree height should be reduced", finalInternalCount < internalNodeCount);
     }
+
+    /**
+     * Test random inserts and removals against a reference set on wider nodes
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        for (int[] params : new int[][]{{2, 4}, {3, 7}, {4, 16}}) {
+            ABTree wide = new ABTree(params[0], params[1]);
+            TreeSet<Integer> reference = new TreeSet<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(2000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals("remove(" + key + ")", reference.remove(key), wide.remove(key));
+                } else {
+                    wide.insert(key);
+                    reference.add(key);
+                }
+            }
+            for (int key = -1; key <= 2000; key++) {
+                assertEquals("contains(" + key + ")", reference.contains(key), wide.contains(key));
+            }
+        }
+    }
+
+    /**
+     * Test that inserting a key that is already a separator does not duplicate it
+     */
+    public void testInsertSeparatorKeyTwice() {
+        for (int key = 10; key <= 80; key += 10) {
+            tree.insert(key);
+        }
+        for (int key = 10; key <= 80; key += 10) {
+            tree.insert(key);
+        }
+        for (int key = 10; key <= 80; key += 10) {
+            assertTrue("Remove should return true for key " + key, tree.remove(key));
+            assertFalse("Tree should not contain removed key " + key, tree.contains(key));
+        }
+    }
+
+    /**
+     * Test bulk loading sorted keys of many sizes into several (a,b) shapes
+     */
+    public void testBulkLoadBuildsValidTree() {
+        for (int[] params : new int[][]{{2, 4}, {2, 5}, {3, 6}, {4, 16}}) {
+            for (double fillFactor : new double[]{1.0, 0.75, 0.5, 0.01}) {
+                for (int n = 0; n < 300; n += 7) {
+                    int[] keys = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        keys[i] = 3 * i;
+                    }
+                    ABTree loaded = new ABTree(params[0], params[1]);
+                    loaded.bulkLoad(keys, fillFactor);
+                    String shape = Arrays.toString(params) + " fill " + fillFactor + " n " + n;
+                    assertEquals(shape, n, checkInvariants(loaded, params[0], params[1]));
+                    for (int i = 0; i < n; i++) {
+                        assertTrue(shape, loaded.contains(3 * i));
+                        assertFalse(shape, loaded.contains(3 * i + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that a bulk loaded tree keeps working with regular inserts and removals
+     */
+    public void testBulkLoadThenUpdate() {
+        int[] keys = new int[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 2 * i;
+        }
+        tree.bulkLoad(keys);
+        for (int i = 0; i < keys.length; i++) {
+            tree.insert(2 * i + 1);
+        }
+        for (int i = 0; i < keys.length; i += 2) {
+            assertTrue(tree.remove(2 * i));
+        }
+        assertEquals(1500, checkInvariants(tree, 2, 4));
+        assertTrue(tree.contains(3));
+        assertFalse(tree.contains(4));
+    }
+
+    /**
+     * Test that bulk loading from an iterator drops repeated keys and rejects unsorted input
+     */
+    public void testBulkLoadFromIterator() {
+        tree.bulkLoad(Arrays.stream(new int[]{1, 1, 2, 3, 3, 3, 4}).iterator());
+        assertEquals(4, checkInvariants(tree, 2, 4));
+        try {
+            tree.bulkLoad(new int[]{1, 3, 2});
+            fail("Should throw IllegalArgumentException for unsorted keys");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test that a full bulk load produces fewer nodes than one-by-one inserts
+     */
+    public void testBulkLoadIsDenserThanInserts() {
+        ABTree inserted = new ABTree(4, 16);
+        ABTree loaded = new ABTree(4, 16);
+        int[] keys = new int[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+            inserted.insert(i);
+        }
+        loaded.bulkLoad(keys);
+        assertTrue("Bulk loaded tree should be denser", countNodes(loaded.root()) < countNodes(inserted.root()));
+    }
+
+    /**
+     * Test that forEach visits inner and leaf keys in ascending order
+     */
+    public void testForEachInOrder() {
+        int[] keys = {50, 10, 90, 30, 70, 20, 80, 40, 60, 0};
+        for (int key : keys) {
+            tree.insert(key);
+        }
+        StringBuilder visited = new StringBuilder();
+        tree.forEach(key -> visited.append(key).append(' '));
+        assertEquals("0 10 20 30 40 50 60 70 80 90 ", visited.toString());
+    }
+
+    /**
+     * Test that batch inserts and removals report the keys they changed
+     */
+    public void testInsertAllAndRemoveAllCounts() {
+        assertEquals(5, tree.insertAll(new int[]{1, 2, 3, 3, 4, 5}));
+        assertEquals(2, tree.insertAll(new int[]{0, 3, 5, 6}));
+        assertEquals(3, tree.removeAll(new int[]{0, 2, 2, 6, 9}));
+        assertEquals(4, checkInvariants(tree, 2, 4));
+        assertTrue(tree.contains(1));
+        assertFalse(tree.contains(2));
+    }
+
+    /**
+     * Test random sorted batches against a TreeSet, checking the (a,b) invariants after every batch
+     */
+    public void testRandomBatchesMatchReferenceSet() {
+        Random random = new Random(3);
+        int[][] shapes = {{2, 4}, {2, 5}, {3, 6}, {8, 32}};
+        for (int[] shape : shapes) {
+            ABTree batched = new ABTree(shape[0], shape[1]);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int round = 0; round < 300; round++) {
+                int[] batch = new int[random.nextInt(round % 10 == 0 ? 2000 : 50)];
+                int range = 1 + random.nextInt(5000);
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = random.nextInt(range);
+                }
+                Arrays.sort(batch);
+                int changed = 0;
+                boolean insert = random.nextInt(5) < 3;
+                for (int key : batch) {
+                    if (insert ? expected.add(key) : expected.remove(key)) {
+                        changed++;
+                    }
+                }
+                assertEquals(changed, insert ? batched.insertAll(batch) : batched.removeAll(batch));
+                assertEquals(expected.size(), checkInvariants(batched, shape[0], shape[1]));
+            }
+            for (int key = 0; key < 5000; key++) {
+                assertEquals(expected.contains(key), batched.contains(key));
+            }
+        }
+    }
+
+    /**
+     * Test that a batch removing every key leaves an empty, usable tree
+     */
+    public void testRemoveAllKeys() {
+        int[] keys = new int[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        tree.insertAll(keys);
+        assertEquals(1000, tree.removeAll(keys));
+        assertEquals(0, checkInvariants(tree, 2, 4));
+        assertTrue(tree.root().isLeaf());
+        tree.insert(7);
+        assertTrue(tree.contains(7));
+    }
+
+    /**
+     * Test that unsorted batches are rejected
+     */
+    public void testInsertAllRejectsUnsortedKeys() {
+        try {
+            tree.insertAll(new int[]{2, 1});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Test that removing absent keys keeps the tree valid although nodes are refilled on the way down
+     */
+    public void testRemoveAbsentKeys() {
+        for (int key = 0; key < 200; key += 2) {
+            tree.insert(key);
+        }
+        for (int key = 1; key < 200; key += 2) {
+            assertFalse(tree.remove(key));
+            assertEquals(100, checkInvariants(tree, 2, 4));
+        }
+    }
+
+    /**
+     * Test removing ranges inside, across and outside the keys
+     */
+    public void testRemoveRange() {
+        for (int key = 0; key < 100; key++) {
+            tree.insert(key);
+        }
+        assertEquals(11, tree.removeRange(10, 20));
+        assertEquals(0, tree.removeRange(10, 20));
+        assertEquals(0, tree.removeRange(30, 29));
+        assertEquals(1, tree.removeRange(50, 50));
+        assertEquals(5, tree.removeRange(95, Integer.MAX_VALUE));
+        assertEquals(5, tree.removeRange(Integer.MIN_VALUE, 4));
+        assertEquals(78, checkInvariants(tree, 2, 4));
+        assertTrue(tree.contains(9));
+        assertFalse(tree.contains(10));
+        assertTrue(tree.contains(21));
+        assertFalse(tree.contains(50));
+        assertEquals(78, tree.removeRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(0, checkInvariants(tree, 2, 4));
+    }
+
+    /**
+     * Test random range removals against a TreeSet, checking the (a,b) invariants after each of them
+     */
+    public void testRandomRemoveRangeMatchesReferenceSet() {
+        Random random = new Random(5);
+        int[][] shapes = {{2, 4}, {2, 5}, {3, 6}, {8, 32}};
+        for (int[] shape : shapes) {
+            ABTree ranged = new ABTree(shape[0], shape[1]);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int round = 0; round < 300; round++) {
+                for (int i = random.nextInt(300); i > 0; i--) {
+                    int key = random.nextInt(10000);
+                    ranged.insert(key);
+                    expected.add(key);
+                }
+                int lo = random.nextInt(10000);
+                int hi = lo + random.nextInt(round % 5 == 0 ? 5000 : 200);
+                int inRange = expected.subSet(lo, true, hi, true).size();
+                expected.subSet(lo, true, hi, true).clear();
+                assertEquals(inRange, ranged.removeRange(lo, hi));
+                assertEquals(expected.size(), checkInvariants(ranged, shape[0], shape[1]));
+            }
+            for (int key = 0; key < 10000; key++) {
+                assertEquals(expected.contains(key), ranged.contains(key));
+            }
+        }
+    }
+
+    /**
+     * Test splitting at random keys, present or not, and concatenating the halves again
+     */
+    public void testSplitAtAndConcat() {
+        Random random = new Random(23);
+        int[][] shapes = {{2, 4}, {2, 5}, {3, 6}, {8, 32}};
+        for (int[] shape : shapes) {
+            for (int round = 0; round < 100; round++) {
+                ABTree lower = new ABTree(shape[0], shape[1]);
+                TreeSet<Integer> expected = new TreeSet<>();
+                for (int i = random.nextInt(round % 10 == 0 ? 5 : 3000); i > 0; i--) {
+                    int key = random.nextInt(10000);
+                    lower.insert(key);
+                    expected.add(key);
+                }
+                int key = round % 4 == 0 && !expected.isEmpty() ? expected.first() + random.nextInt(3)
+                        : random.nextInt(10200) - 100;
+                ABTree upper = lower.splitAt(key);
+                assertEquals(expected.headSet(key).size(), checkInvariants(lower, shape[0], shape[1]));
+                assertEquals(expected.tailSet(key).size(), checkInvariants(upper, shape[0], shape[1]));
+                assertEquals(new ArrayList<>(expected.headSet(key)), keys(lower));
+                assertEquals(new ArrayList<>(expected.tailSet(key)), keys(upper));
+
+                ABTree joined = ABTree.concat(lower, upper);
+                assertEquals(expected.size(), checkInvariants(joined, shape[0], shape[1]));
+                assertEquals(new ArrayList<>(expected), keys(joined));
+                assertEquals(0, checkInvariants(lower, shape[0], shape[1]));
+                assertEquals(0, checkInvariants(upper, shape[0], shape[1]));
+            }
+        }
+    }
+
+    /**
+     * Test that concatenating trees of very different heights keeps the tree valid
+     */
+    public void testConcatTreesOfDifferentHeights() {
+        for (int small = 0; small < 20; small++) {
+            ABTree large = new ABTree(2, 4);
+            ABTree little = new ABTree(2, 4);
+            for (int key = 0; key < 5000; key++) {
+                large.insert(key);
+            }
+            for (int key = 0; key < small; key++) {
+                little.insert(10000 + key);
+            }
+            ABTree joined = ABTree.concat(large, little);
+            assertEquals(5000 + small, checkInvariants(joined, 2, 4));
+            ABTree lowKeys = new ABTree(2, 4);
+            for (int key = 0; key < small; key++) {
+                lowKeys.insert(key - 100);
+            }
+            joined = ABTree.concat(lowKeys, joined);
+            assertEquals(5000 + 2 * small, checkInvariants(joined, 2, 4));
+            assertEquals(small > 0, joined.contains(-100));
+        }
+    }
+
+    /**
+     * Test that concat rejects overlapping key ranges and different bounds
+     */
+    public void testConcatRejectsInvalidTrees() {
+        ABTree left = new ABTree(2, 4);
+        ABTree right = new ABTree(2, 4);
+        left.insert(5);
+        right.insert(5);
+        try {
+            ABTree.concat(left, right);
+            fail("Should throw IllegalArgumentException for overlapping keys");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+        try {
+            ABTree.concat(left, new ABTree(3, 6));
+            fail("Should throw IllegalArgumentException for different bounds");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+        assertTrue(left.contains(5));
+        assertTrue(right.contains(5));
+    }
+
+    private static List<Integer> keys(ABTree tree) {
+        List<Integer> keys = new ArrayList<>();
+        tree.forEach(keys::add);
+        return keys;
+    }
+
+    /**
+     * Checks the (a,b) invariants and key order of the whole tree and returns the number of keys.
+     */
+    static int checkInvariants(ABTree tree, int a, int b) {
+        Node root = tree.root();
+        int[] depth = {-1};
+        return checkNode(root, root, a, b, Long.MIN_VALUE, Long.MAX_VALUE, 0, depth);
+    }
+
+    private static int checkNode(Node node, Node root, int a, int b, long low, long high, int level, int[] leafDepth) {
+        assertTrue("Too many keys", node.keyCount <= b - 1);
+        if (node != root) {
+            assertTrue("Too few keys: " + node.keysToString(), node.keyCount >= a - 1);
+        }
+        for (int i = 0; i < node.keyCount; i++) {
+            assertTrue("Key out of order", node.keys[i] > low && node.keys[i] < high);
+            assertTrue("Keys not ascending", i == 0 || node.keys[i - 1] < node.keys[i]);
+        }
+        if (node.isLeaf()) {
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = level;
+            }
+            assertEquals("Leaves at different depths", leafDepth[0], level);
+            return node.keyCount;
+        }
+        ABTreeInnerNode inner = (ABTreeInnerNode) node;
+        assertEquals("Child count", node.keyCount + 1, inner.childCount);
+        int count = node.keyCount;
+        for (int i = 0; i < inner.childCount; i++) {
+            long childLow = i == 0 ? low : node.keys[i - 1];
+            long childHigh = i == node.keyCount ? high : node.keys[i];
+            count += checkNode(inner.children[i], root, a, b, childLow, childHigh, level + 1, leafDepth);
+        }
+        return count;
+    }
+
+    static int countNodes(Node node) {
+        if (node.isLeaf()) {
+            return 1;
+        }
+        ABTreeInnerNode inner = (ABTreeInnerNode) node;
+        int count = 1;
+        for (int i = 0; i < inner.childCount; i++) {
+            count += countNodes(inner.children[i]);
+        }
+        return count;
+    }
 }
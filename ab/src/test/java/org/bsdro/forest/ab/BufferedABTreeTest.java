@@ -0,0 +1,147 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for the buffered (a,b)-tree
+ */
+public class BufferedABTreeTest extends TestCase {
+
+    /**
+     * Test that lookups see inserts and removes that are still waiting in a buffer
+     */
+    public void testContainsSeesPendingMessages() {
+        BufferedABTree tree = new BufferedABTree(2, 4, 8);
+        for (int key = 0; key < 10; key++) {
+            tree.insert(key);
+        }
+        assertFalse(tree.root().isLeaf());
+        assertTrue(((BufferedInnerNode) tree.root()).bufferCount > 0);
+        tree.remove(3);
+        tree.remove(42);
+        tree.insert(3);
+        tree.remove(5);
+        for (int key = 0; key < 10; key++) {
+            assertEquals("contains(" + key + ")", key != 5, tree.contains(key));
+        }
+        assertFalse(tree.contains(42));
+        assertEquals(List.of(0, 1, 2, 3, 4, 6, 7, 8, 9), keys(tree));
+    }
+
+    /**
+     * Test random inserts and removes against a reference set for several node and buffer sizes
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        int[][] configs = {{2, 4, 1}, {2, 4, 8}, {3, 7, 5}, {4, 16, 64}, {8, 32, 128}};
+        for (int[] config : configs) {
+            BufferedABTree tree = new BufferedABTree(config[0], config[1], config[2]);
+            TreeSet<Integer> reference = new TreeSet<>();
+            Random random = new Random(20);
+            for (int i = 0; i < 40000; i++) {
+                int key = random.nextInt(3000);
+                // Phases of mostly inserts and mostly removes, so the tree grows and shrinks again
+                if (random.nextInt(10) < ((i / 5000) % 2 == 0 ? 7 : 3)) {
+                    tree.insert(key);
+                    reference.add(key);
+                } else {
+                    tree.remove(key);
+                    reference.remove(key);
+                }
+                if (i % 997 == 0) {
+                    checkInvariants(tree, config[0], config[1]);
+                }
+            }
+            checkInvariants(tree, config[0], config[1]);
+            for (int key = -1; key <= 3000; key++) {
+                assertEquals("contains(" + key + ")", reference.contains(key), tree.contains(key));
+            }
+            assertEquals(new ArrayList<>(reference), keys(tree));
+        }
+    }
+
+    /**
+     * Test that removing every key leaves an empty tree
+     */
+    public void testRemoveEverything() {
+        BufferedABTree tree = new BufferedABTree(2, 4, 4);
+        for (int key = 0; key < 1000; key++) {
+            tree.insert(key);
+        }
+        for (int key = 0; key < 1000; key++) {
+            tree.remove(key);
+        }
+        checkInvariants(tree, 2, 4);
+        assertTrue(keys(tree).isEmpty());
+        assertFalse(tree.contains(500));
+    }
+
+    /**
+     * Test that invalid bounds and buffer sizes are rejected
+     */
+    public void testInvalidParameters() {
+        try {
+            new BufferedABTree(3, 4);
+            fail("Should throw IllegalArgumentException for a > b/2");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+        try {
+            new BufferedABTree(2, 4, 0);
+            fail("Should throw IllegalArgumentException for an empty buffer");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    private static List<Integer> keys(BufferedABTree tree) {
+        List<Integer> keys = new ArrayList<>();
+        tree.forEach(keys::add);
+        return keys;
+    }
+
+    /**
+     * Checks the (a,b) bounds, the key and message ranges and that all leaves are on the same level.
+     */
+    private static void checkInvariants(BufferedABTree tree, int a, int b) {
+        checkNode(tree.root(), a, b, Long.MIN_VALUE, Long.MAX_VALUE, true, new int[]{-1}, 0);
+    }
+
+    private static void checkNode(Node node, int a, int b, long lo, long hi, boolean isRoot, int[] leafDepth,
+                                  int depth) {
+        for (int i = 0; i < node.keyCount; i++) {
+            assertTrue("keys in range", node.keys[i] >= lo && node.keys[i] < hi);
+            assertTrue("keys ascending", i == 0 || node.keys[i - 1] < node.keys[i]);
+        }
+        if (node.isLeaf()) {
+            assertTrue("leaf overfull", node.keyCount <= b - 1);
+            assertTrue("leaf underfull", isRoot || node.keyCount >= a - 1);
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = depth;
+            }
+            assertEquals("leaf depth", leafDepth[0], depth);
+            return;
+        }
+        BufferedInnerNode innerNode = (BufferedInnerNode) node;
+        assertEquals(innerNode.keyCount + 1, innerNode.childCount);
+        assertTrue("inner node overfull", innerNode.childCount <= b);
+        assertTrue("inner node underfull", innerNode.childCount >= (isRoot ? 1 : a));
+        int messageCount = 0;
+        for (int i = 0; i < innerNode.childCount; i++) {
+            long childLo = i == 0 ? lo : innerNode.keys[i - 1];
+            long childHi = i == innerNode.keyCount ? hi : innerNode.keys[i];
+            BufferedInnerNode.Messages messages = innerNode.buffers[i];
+            for (int m = 0; m < messages.count; m++) {
+                assertTrue("messages in range", messages.key(m) >= childLo && messages.key(m) < childHi);
+                assertTrue("messages ascending", m == 0 || messages.key(m - 1) < messages.key(m));
+            }
+            messageCount += messages.count;
+            checkNode(innerNode.children[i], a, b, childLo, childHi, false, leafDepth, depth + 1);
+        }
+        assertEquals("message count", messageCount, innerNode.bufferCount);
+    }
+}
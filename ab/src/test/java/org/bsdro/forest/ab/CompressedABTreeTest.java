@@ -0,0 +1,218 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for the (a,b)-tree with compressed leaves
+ */
+public class CompressedABTreeTest extends TestCase {
+
+    /**
+     * Test that a leaf searches, inserts and removes in its packed form, including frames that span every int
+     */
+    public void testLeafMatchesReference() {
+        int[][] ranges = {{0, 100}, {-50, 50}, {1 << 20, (1 << 20) + 5000}, {Integer.MIN_VALUE, Integer.MAX_VALUE}};
+        for (int[] range : ranges) {
+            CompressedLeaf leaf = new CompressedLeaf();
+            TreeSet<Integer> reference = new TreeSet<>();
+            Random random = new Random(3);
+            for (int i = 0; i < 2000; i++) {
+                int key = (int) (range[0] + (long) (random.nextDouble() * ((long) range[1] - range[0])));
+                int index = leaf.search(key);
+                assertEquals(reference.contains(key), index >= 0);
+                if (reference.size() < 40 && random.nextBoolean()) {
+                    if (index < 0) {
+                        leaf.insertKey(-index - 1, key);
+                        reference.add(key);
+                    }
+                } else if (index >= 0) {
+                    assertEquals(key, leaf.removeKey(index));
+                    reference.remove(key);
+                }
+                assertEquals(reference.size(), leaf.keyCount);
+                int position = 0;
+                for (int expected : reference) {
+                    assertEquals(expected, leaf.keyAt(position++));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that encoding picks the narrowest frame and decodes to the same keys
+     */
+    public void testEncodeNarrowestFrame() {
+        CompressedLeaf leaf = new CompressedLeaf();
+        int[] keys = new int[63];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 1000 + 2 * i;
+        }
+        leaf.encode(keys, 0, keys.length);
+        assertEquals(1000, leaf.base);
+        assertEquals(7, leaf.width);
+        assertEquals(7, leaf.words.length);
+        int[] decoded = new int[keys.length];
+        assertEquals(keys.length, leaf.decode(decoded, 0));
+        assertTrue(Arrays.equals(keys, decoded));
+        assertEquals(-1, leaf.search(999));
+        assertEquals(-keys.length - 1, leaf.search(1200));
+        assertEquals(-2, leaf.search(1001));
+
+        leaf.encode(new int[] {42}, 0, 1);
+        assertEquals(0, leaf.width);
+        assertEquals(0, leaf.words.length);
+        assertEquals(0, leaf.search(42));
+    }
+
+    /**
+     * Test random inserts and removes against a reference set for several node sizes
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        int[][] configs = {{2, 4}, {3, 7}, {4, 16}, {8, 32}, {16, 64}};
+        for (int[] config : configs) {
+            CompressedABTree tree = new CompressedABTree(config[0], config[1]);
+            TreeSet<Integer> reference = new TreeSet<>();
+            Random random = new Random(20);
+            for (int i = 0; i < 40000; i++) {
+                int key = random.nextInt(3000) - 1000;
+                // Phases of mostly inserts and mostly removes, so the tree grows and shrinks again
+                if (random.nextInt(10) < ((i / 5000) % 2 == 0 ? 7 : 3)) {
+                    tree.insert(key);
+                    reference.add(key);
+                } else {
+                    assertEquals(reference.remove(key), tree.remove(key));
+                }
+                if (i % 997 == 0) {
+                    checkInvariants(tree, config[0], config[1]);
+                }
+            }
+            checkInvariants(tree, config[0], config[1]);
+            for (int key = -1001; key <= 2000; key++) {
+                assertEquals("contains(" + key + ")", reference.contains(key), tree.contains(key));
+            }
+            assertEquals(new ArrayList<>(reference), keys(tree));
+            assertEquals(new ArrayList<>(reference.subSet(-500, true, 1500, true)), scan(tree, -500, 1500));
+        }
+    }
+
+    /**
+     * Test that a bulk load builds a valid tree of tightly encoded leaves that takes updates afterwards
+     */
+    public void testBulkLoad() {
+        CompressedABTree tree = new CompressedABTree(16, 64);
+        int[] keys = new int[100000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 2 * i;
+        }
+        tree.bulkLoad(keys);
+        checkInvariants(tree, 16, 64);
+        long words = leafWords(tree.root());
+        assertTrue("about 7 bits per key", words * 64 < keys.length * 8L);
+        for (int key = 0; key < 200000; key += 3) {
+            assertEquals(key % 2 == 0, tree.contains(key));
+        }
+        for (int key = 1; key < 2000; key += 2) {
+            tree.insert(key);
+        }
+        for (int key = 0; key < 100000; key += 4) {
+            assertTrue(tree.remove(key));
+        }
+        checkInvariants(tree, 16, 64);
+        assertEquals(100000 + 1000 - 25000, keys(tree).size());
+        assertEquals(keys(tree), scan(tree, Integer.MIN_VALUE, Integer.MAX_VALUE));
+
+        tree.bulkLoad(new int[0]);
+        assertTrue(keys(tree).isEmpty());
+        try {
+            tree.bulkLoad(new int[] {1, 3, 3});
+            fail("Should throw IllegalArgumentException for repeated keys");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test that removing every key leaves an empty tree
+     */
+    public void testRemoveEverything() {
+        CompressedABTree tree = new CompressedABTree(2, 4);
+        for (int key = 0; key < 1000; key++) {
+            tree.insert(key);
+        }
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(tree.remove(key));
+        }
+        checkInvariants(tree, 2, 4);
+        assertTrue(keys(tree).isEmpty());
+        assertFalse(tree.contains(500));
+    }
+
+    private static List<Integer> keys(CompressedABTree tree) {
+        List<Integer> keys = new ArrayList<>();
+        tree.forEach(keys::add);
+        return keys;
+    }
+
+    private static List<Integer> scan(CompressedABTree tree, int from, int to) {
+        List<Integer> keys = new ArrayList<>();
+        tree.scan(from, to).forEachRemaining((int key) -> keys.add(key));
+        return keys;
+    }
+
+    private static long leafWords(Node node) {
+        if (node.isLeaf()) {
+            return ((CompressedLeaf) node).words.length;
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        long words = 0;
+        for (int i = 0; i < innerNode.childCount; i++) {
+            words += leafWords(innerNode.children[i]);
+        }
+        return words;
+    }
+
+    /**
+     * Checks the (a,b) bounds, the key ranges and that all leaves are on the same level.
+     */
+    private static void checkInvariants(CompressedABTree tree, int a, int b) {
+        checkNode(tree.root(), a, b, Long.MIN_VALUE, Long.MAX_VALUE, true, new int[]{-1}, 0);
+    }
+
+    private static void checkNode(Node node, int a, int b, long lo, long hi, boolean isRoot, int[] leafDepth,
+                                  int depth) {
+        if (node.isLeaf()) {
+            CompressedLeaf leaf = (CompressedLeaf) node;
+            for (int i = 0; i < leaf.keyCount; i++) {
+                assertTrue("keys in range", leaf.keyAt(i) >= lo && leaf.keyAt(i) < hi);
+                assertTrue("keys ascending", i == 0 || leaf.keyAt(i - 1) < leaf.keyAt(i));
+                assertTrue("keys above base", leaf.keyAt(i) >= leaf.base);
+            }
+            assertTrue("leaf overfull", leaf.keyCount <= b - 1);
+            assertTrue("leaf underfull", isRoot || leaf.keyCount >= a - 1);
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = depth;
+            }
+            assertEquals("leaf depth", leafDepth[0], depth);
+            return;
+        }
+        ABTreeInnerNode innerNode = (ABTreeInnerNode) node;
+        for (int i = 0; i < innerNode.keyCount; i++) {
+            assertTrue("separators in range", innerNode.keys[i] >= lo && innerNode.keys[i] < hi);
+            assertTrue("separators ascending", i == 0 || innerNode.keys[i - 1] < innerNode.keys[i]);
+        }
+        assertEquals(innerNode.keyCount + 1, innerNode.childCount);
+        assertTrue("inner node overfull", innerNode.childCount <= b);
+        assertTrue("inner node underfull", innerNode.childCount >= (isRoot ? 1 : a));
+        for (int i = 0; i < innerNode.childCount; i++) {
+            long childLo = i == 0 ? lo : innerNode.keys[i - 1];
+            long childHi = i == innerNode.keyCount ? hi : innerNode.keys[i];
+            checkNode(innerNode.children[i], a, b, childLo, childHi, false, leafDepth, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test class for the optimistic lock coupling (a,b)-tree
+ */
+public class ConcurrentABTreeTest extends TestCase {
+
+    /**
+     * Test single-threaded random operations against a reference set
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        for (int[] params : new int[][]{{2, 4}, {3, 7}, {4, 16}}) {
+            ConcurrentABTree tree = new ConcurrentABTree(params[0], params[1]);
+            TreeSet<Integer> reference = new TreeSet<>();
+            Random random = new Random(5);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(2000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals("remove(" + key + ")", reference.remove(key), tree.remove(key));
+                } else {
+                    tree.insert(key);
+                    reference.add(key);
+                }
+            }
+            assertEquals(reference.size(), checkInvariants(tree, params[0], params[1]));
+            for (int key = -1; key <= 2000; key++) {
+                assertEquals("contains(" + key + ")", reference.contains(key), tree.contains(key));
+            }
+        }
+    }
+
+    /**
+     * Stress test: writers churn their own disjoint key sets while readers keep checking keys nobody removes
+     */
+    public void testConcurrentWritersAndReaders() throws InterruptedException {
+        final int writers = 4;
+        final int readers = 2;
+        final int keySpace = 20000;
+        final int operations = 100000;
+        ConcurrentABTree tree = new ConcurrentABTree(2, 5);
+        for (int key = 0; key < keySpace; key += 100) {
+            tree.insert(key); // stable keys, never touched by the writers
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger missedStableKeys = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<TreeSet<Integer>> expected = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            final int id = w;
+            TreeSet<Integer> mine = new TreeSet<>();
+            expected.add(mine);
+            threads.add(new Thread(() -> {
+                Random random = new Random(id);
+                try {
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        int key = random.nextInt(keySpace / writers) * writers + id;
+                        if (key % 100 == 0) {
+                            continue;
+                        }
+                        if (random.nextBoolean()) {
+                            tree.insert(key);
+                            mine.add(key);
+                        } else if (tree.remove(key) != mine.remove(key)) {
+                            throw new AssertionError("remove(" + key + ") disagrees with the writer's own view");
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            final int id = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(100 + id);
+                try {
+                    start.await();
+                    while (!done.get()) {
+                        int key = random.nextInt(keySpace / 100) * 100;
+                        if (!tree.contains(key)) {
+                            missedStableKeys.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (int i = 0; i < writers; i++) {
+            threads.get(i).join();
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull("Worker failed: " + failure.get(), failure.get());
+        assertEquals("Readers must always find the stable keys", 0, missedStableKeys.get());
+        TreeSet<Integer> all = new TreeSet<>();
+        for (int key = 0; key < keySpace; key += 100) {
+            all.add(key);
+        }
+        for (TreeSet<Integer> mine : expected) {
+            all.addAll(mine);
+        }
+        assertEquals(all.size(), checkInvariants(tree, 2, 5));
+        for (int key = 0; key < keySpace; key++) {
+            assertEquals("contains(" + key + ")", all.contains(key), tree.contains(key));
+        }
+    }
+
+    static int checkInvariants(ConcurrentABTree tree, int a, int b) {
+        int[] depth = {-1};
+        return checkNode(tree.root(), tree.root(), a, b, Long.MIN_VALUE, Long.MAX_VALUE, 0, depth);
+    }
+
+    private static int checkNode(OptimisticNode node, OptimisticNode root, int a, int b, long low, long high,
+                                 int level, int[] leafDepth) {
+        assertTrue("Node left locked or obsolete", node.readLock() != OptimisticNode.RESTART);
+        assertTrue("Too many keys", node.keyCount <= b - 1);
+        if (node != root) {
+            assertTrue("Too few keys: " + node.keysToString(), node.keyCount >= a - 1);
+        }
+        for (int i = 0; i < node.keyCount; i++) {
+            assertTrue("Key out of range", node.keys[i] >= low && node.keys[i] < high);
+            assertTrue("Keys not ascending", i == 0 || node.keys[i - 1] < node.keys[i]);
+        }
+        if (node.isLeaf()) {
+            if (leafDepth[0] < 0) {
+                leafDepth[0] = level;
+            }
+            assertEquals("Leaves at different depths", leafDepth[0], level);
+            return node.keyCount;
+        }
+        assertEquals("Child count", node.keyCount + 1, node.childCount);
+        int count = 0;
+        for (int i = 0; i < node.childCount; i++) {
+            long childLow = i == 0 ? low : node.keys[i - 1];
+            long childHigh = i == node.keyCount ? high : node.keys[i];
+            count += checkNode(node.children[i], root, a, b, childLow, childHigh, level + 1, leafDepth);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,162 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Test class for the CuckooFilter in front of ABTree.contains
+ */
+public class CuckooFilterTest extends TestCase {
+
+    /**
+     * Test that the filter is off until enabled and covers the keys already present
+     */
+    public void testEnableAndDisable() {
+        ABTree tree = new ABTree(2, 4);
+        for (int key = 0; key < 1000; key++) {
+            tree.insert(key);
+        }
+        assertNull(tree.filter());
+        CuckooFilter filter = tree.enableFilter();
+        assertSame(filter, tree.enableFilter());
+        assertEquals(1, filter.rebuilds());
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(tree.contains(key));
+        }
+        assertFalse(tree.contains(-1));
+        tree.disableFilter();
+        assertNull(tree.filter());
+        assertTrue(tree.contains(500));
+    }
+
+    /**
+     * Test that random inserts and removes never cause a false negative
+     */
+    public void testRandomOperations() {
+        ABTree tree = new ABTree(3, 6);
+        tree.enableFilter();
+        Set<Integer> reference = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                tree.remove(key);
+                reference.remove(key);
+            } else if (!reference.contains(key)) {
+                tree.insert(key);
+                reference.add(key);
+            }
+            int probe = random.nextInt(5000);
+            assertEquals(reference.contains(probe), tree.contains(probe));
+        }
+    }
+
+    /**
+     * Test that the filter stays in sync through the batch and range updates
+     */
+    public void testBatchAndRangeUpdates() {
+        ABTree tree = new ABTree(2, 4);
+        tree.enableFilter();
+        int[] keys = new int[2000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 2 * i;
+        }
+        tree.insertAll(keys);
+        int[] removed = new int[500];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = 4 * i;
+        }
+        tree.removeAll(removed);
+        tree.removeRange(3000, 3500);
+        ABTree upper = tree.splitAt(3800);
+        for (int key = 0; key < 4000; key++) {
+            boolean expected = key % 2 == 0 && (key >= 2000 || key % 4 != 0) && (key < 3000 || key > 3500)
+                    && key < 3800;
+            assertEquals(expected, tree.contains(key));
+        }
+        int[] moved = new int[1];
+        upper.forEach(key -> moved[0]++);
+        assertEquals(100, moved[0]);
+        assertTrue(tree.filter().load() <= CuckooFilter.MAX_LOAD);
+        assertNotNull(upper.filter());
+        assertTrue(upper.contains(3998));
+        assertFalse(upper.contains(3999));
+        assertEquals(1, upper.filter().negatives() + upper.filter().falsePositives());
+    }
+
+    /**
+     * Test that concat gives the joined tree a filter over all keys and empties the filters of the inputs
+     */
+    public void testConcat() {
+        ABTree left = new ABTree(2, 4);
+        ABTree right = new ABTree(2, 4);
+        for (int key = 0; key < 1000; key++) {
+            left.insert(key);
+            right.insert(key + 1000);
+        }
+        left.enableFilter();
+        ABTree joined = ABTree.concat(left, right);
+        CuckooFilter filter = joined.filter();
+        assertNotNull(filter);
+        assertEquals(0.0, left.filter().load());
+        assertNull(right.filter());
+        for (int key = 0; key < 2000; key++) {
+            assertTrue(joined.contains(key));
+            assertFalse(left.contains(key));
+        }
+        assertEquals(2000, left.filter().negatives());
+        for (int key = 2000; key < 3000; key++) {
+            assertFalse(joined.contains(key));
+        }
+        assertEquals(1000, filter.negatives() + filter.falsePositives());
+        assertTrue(filter.negatives() > 990);
+        assertEquals(1, filter.rebuilds());
+    }
+
+    /**
+     * Test that the filter grows with the tree and shrinks again once most keys are gone
+     */
+    public void testResize() {
+        ABTree tree = new ABTree(8, 16);
+        CuckooFilter filter = tree.enableFilter();
+        int initial = filter.capacity();
+        for (int key = 0; key < 100000; key++) {
+            tree.insert(key);
+        }
+        assertTrue(filter.capacity() > initial);
+        assertTrue(filter.load() <= CuckooFilter.MAX_LOAD);
+        int grown = filter.capacity();
+        for (int key = 0; key < 99000; key++) {
+            tree.remove(key);
+        }
+        assertTrue(filter.capacity() < grown);
+        assertTrue(filter.load() >= CuckooFilter.MIN_LOAD);
+        for (int key = 99000; key < 100000; key++) {
+            assertTrue(tree.contains(key));
+        }
+    }
+
+    /**
+     * Test that most absent keys are rejected by the filter and the false positive rate is reported
+     */
+    public void testFalsePositiveRate() {
+        ABTree tree = new ABTree(8, 16);
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            tree.insert(2 * random.nextInt(1 << 29));
+        }
+        CuckooFilter filter = tree.enableFilter();
+        assertEquals(0.0, filter.falsePositiveRate());
+        for (int i = 0; i < 100000; i++) {
+            assertFalse(tree.contains(2 * random.nextInt(1 << 29) + 1));
+        }
+        assertEquals(100000, filter.negatives() + filter.falsePositives());
+        assertTrue(filter.falsePositiveRate() < 0.01);
+        filter.resetCounters();
+        assertEquals(0, filter.negatives());
+        assertEquals(0, filter.rebuilds());
+    }
+}
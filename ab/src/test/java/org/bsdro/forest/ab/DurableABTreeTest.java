@@ -0,0 +1,311 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for the write-ahead logged (a,b)-tree
+ */
+public class DurableABTreeTest extends TestCase {
+
+    private Path directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("durable-abtree");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        for (Path file : files("*")) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Test that random operations are recovered from the log alone
+     */
+    public void testRecoverFromLog() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(7);
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            for (int i = 0; i < 3000; i++) {
+                int key = random.nextInt(500) - 250;
+                if (random.nextBoolean()) {
+                    tree.insert(key);
+                    expected.add(key);
+                } else {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                }
+            }
+        }
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            assertEquals(new ArrayList<>(expected), keys(tree));
+        }
+    }
+
+    /**
+     * Test that only operations that change the key set are logged
+     */
+    public void testUnchangedKeysAreNotLogged() {
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            tree.insert(1);
+            tree.insert(1);
+            assertFalse(tree.remove(2));
+            assertEquals(1, tree.syncs());
+            assertTrue(tree.remove(1));
+            assertEquals(2, tree.syncs());
+        }
+        assertEquals(2, WriteAheadLog.replay(directory, 0, (op, key) -> { }));
+    }
+
+    /**
+     * Test that operations are recovered when the tree was never closed
+     */
+    public void testRecoverWithoutClose() {
+        DurableABTree crashed = DurableABTree.open(directory, 2, 4);
+        for (int key = 0; key < 100; key++) {
+            crashed.insert(key);
+        }
+        crashed.remove(50);
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            assertEquals(99, keys(tree).size());
+            assertFalse(tree.contains(50));
+            assertTrue(tree.contains(99));
+        }
+        crashed.close();
+    }
+
+    /**
+     * Test that a torn record at the end of the log is ignored and cut off
+     */
+    public void testTornTail() throws IOException {
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            tree.insert(1);
+            tree.insert(2);
+        }
+        Path segment = files("wal-*.log").get(0);
+        Files.write(segment, new byte[]{WriteAheadLog.INSERT, 0, 0}, StandardOpenOption.APPEND);
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            assertEquals(List.of(1, 2), keys(tree));
+            tree.insert(3);
+        }
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            assertEquals(List.of(1, 2, 3), keys(tree));
+        }
+    }
+
+    /**
+     * Test that a bad record or a gap before the last segment stops recovery instead of being cut off
+     */
+    public void testCorruptionBeforeTail() throws IOException {
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            tree.insert(1);
+            tree.insert(2);
+            tree.insert(3);
+        }
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            tree.insert(4);
+        }
+        List<Path> segments = files("wal-*.log");
+        assertEquals(2, segments.size());
+        segments.sort(null);
+        Path first = segments.get(0);
+        byte[] bytes = Files.readAllBytes(first);
+        bytes[10] ^= 1; // key of the second record
+        Files.write(first, bytes);
+        assertOpenFails();
+        bytes[10] ^= 1;
+        Files.write(first, Arrays.copyOf(bytes, 9)); // only the first record is left
+        assertOpenFails();
+        Files.write(first, bytes);
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            assertEquals(List.of(1, 2, 3, 4), keys(tree));
+        }
+    }
+
+    private void assertOpenFails() {
+        try {
+            DurableABTree.open(directory, 2, 4).close();
+            fail("Should throw IllegalStateException for a damaged log");
+        } catch (IllegalStateException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test that checkpoints bound the log and are combined with the log tail on recovery
+     */
+    public void testCheckpoints() throws IOException {
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4, 100)) {
+            for (int key = 0; key < 1050; key++) {
+                tree.insert(key * 7);
+            }
+            for (int key = 0; key < 20; key++) {
+                tree.remove(key * 7);
+            }
+        }
+        assertTrue(Files.exists(directory.resolve("checkpoint")));
+        assertTrue(files("wal-*.log").size() <= 2);
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4, 100)) {
+            List<Integer> keys = keys(tree);
+            assertEquals(1030, keys.size());
+            assertEquals(Integer.valueOf(140), keys.get(0));
+            assertEquals(Integer.valueOf(1049 * 7), keys.get(1029));
+        }
+    }
+
+    /**
+     * Test that an explicit checkpoint of negative and extreme keys round-trips
+     */
+    public void testCheckpointExtremeKeys() {
+        int[] keys = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            for (int key : keys) {
+                tree.insert(key);
+            }
+            tree.checkpoint();
+        }
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            assertEquals(List.of(Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE), keys(tree));
+        }
+    }
+
+    /**
+     * Test that one sync makes every record buffered before it durable
+     */
+    public void testGroupCommit() {
+        try (WriteAheadLog log = new WriteAheadLog(directory, 0)) {
+            log.append(WriteAheadLog.INSERT, 1);
+            log.append(WriteAheadLog.INSERT, 2);
+            long last = log.append(WriteAheadLog.REMOVE, 1);
+            log.sync(last);
+            log.sync(0);
+            assertEquals(1, log.syncs);
+        }
+        TreeSet<Integer> replayed = new TreeSet<>();
+        WriteAheadLog.replay(directory, 0, (op, key) -> {
+            if (op == WriteAheadLog.INSERT) {
+                replayed.add(key);
+            } else {
+                replayed.remove(key);
+            }
+        });
+        assertEquals(List.of(2), new ArrayList<>(replayed));
+    }
+
+    /**
+     * Test concurrent writers against the same tree
+     */
+    public void testConcurrentInserts() throws InterruptedException {
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                int offset = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        tree.insert(i * 4 + offset);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(tree.syncs() <= 1000);
+        }
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4)) {
+            assertEquals(1000, keys(tree).size());
+        }
+    }
+
+    /**
+     * Test concurrent updates of shared keys with frequent checkpoints against what recovery finds
+     */
+    public void testConcurrentUpdatesWithCheckpoints() throws InterruptedException {
+        List<Integer> expected;
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4, 50)) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                Random random = new Random(t);
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        int key = random.nextInt(100);
+                        if (random.nextBoolean()) {
+                            tree.insert(key);
+                        } else {
+                            tree.remove(key);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            expected = keys(tree);
+        }
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4, 50)) {
+            assertEquals(expected, keys(tree));
+        }
+    }
+
+    /**
+     * Test that a writer that is interrupted around every insert neither fails nor holds up the other writers, and
+     * gets its interrupt back
+     */
+    public void testInterruptedWriter() throws InterruptedException {
+        int[] interruptsKept = {0};
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4, 100)) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                int offset = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        if (offset == 0) {
+                            Thread.currentThread().interrupt();
+                        }
+                        tree.insert(i * 4 + offset);
+                        if (offset == 0 && Thread.interrupted()) {
+                            interruptsKept[0]++;
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(250, interruptsKept[0]);
+            assertEquals(1000, keys(tree).size());
+        }
+        try (DurableABTree tree = DurableABTree.open(directory, 2, 4, 100)) {
+            assertEquals(1000, keys(tree).size());
+        }
+    }
+
+    private static List<Integer> keys(DurableABTree tree) {
+        List<Integer> keys = new ArrayList<>();
+        tree.forEach(keys::add);
+        return keys;
+    }
+
+    private List<Path> files(String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,46 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test class for the node search kernels
+ */
+public class NodeSearchTest extends TestCase {
+
+    /**
+     * Test that the vector kernel is available when the module is added, as it is for these tests
+     */
+    public void testVectorKernelLoaded() {
+        assertNotNull(NodeSearch.VECTOR);
+    }
+
+    /**
+     * Test that the vector kernel agrees with binary search for hits, misses and partial vectors
+     */
+    public void testVectorMatchesBinarySearch() {
+        Random random = new Random(17);
+        NodeSearch vector = new VectorNodeSearch();
+        for (int round = 0; round < 2000; round++) {
+            int[] keys = new int[1 + random.nextInt(300)];
+            int count = random.nextInt(keys.length + 1);
+            int next = random.nextInt(100) - 50;
+            for (int i = 0; i < count; i++) {
+                keys[i] = next;
+                next += 1 + random.nextInt(3);
+            }
+            for (int i = count; i < keys.length; i++) {
+                keys[i] = random.nextInt();
+            }
+            for (int probe = -60; probe < next + 10; probe++) {
+                assertEquals(Arrays.binarySearch(keys, 0, count, probe), vector.search(keys, count, probe));
+            }
+            assertEquals(Arrays.binarySearch(keys, 0, count, Integer.MIN_VALUE),
+                    vector.search(keys, count, Integer.MIN_VALUE));
+            assertEquals(Arrays.binarySearch(keys, 0, count, Integer.MAX_VALUE),
+                    vector.search(keys, count, Integer.MAX_VALUE));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.bsdro.forest.ab;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for the disk-resident (a,b)-tree
+ */
+public class PagedABTreeTest extends TestCase {
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("paged-abtree", ".pages");
+        Files.delete(file);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Test random inserts and removals against a TreeSet with a pool much smaller than the tree
+     */
+    public void testRandomOperationsAgainstTreeSet() {
+        Random random = new Random(42);
+        TreeSet<Integer> expected = new TreeSet<>();
+        try (PagedABTree tree = PagedABTree.open(file, 2, 5, 64, 8)) {
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(2000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                } else {
+                    expected.add(key);
+                    tree.insert(key);
+                }
+            }
+            for (int key = 0; key < 2000; key++) {
+                assertEquals(expected.contains(key), tree.contains(key));
+            }
+        }
+    }
+
+    /**
+     * Test that the keys are still there after closing and reopening the file
+     */
+    public void testReopen() {
+        try (PagedABTree tree = PagedABTree.open(file, 3, 8, 128, 16)) {
+            for (int key = 0; key < 5000; key++) {
+                tree.insert(key * 3);
+            }
+            for (int key = 0; key < 1000; key++) {
+                assertTrue(tree.remove(key * 3));
+            }
+        }
+        try (PagedABTree tree = PagedABTree.open(file, 3, 8, 128, 16)) {
+            for (int key = 0; key < 15000; key++) {
+                assertEquals(key >= 3000 && key % 3 == 0, tree.contains(key));
+            }
+        }
+    }
+
+    /**
+     * Test that a freshly opened tree reads at most one page per level for a lookup
+     */
+    public void testLookupReadsOnePagePerLevel() {
+        try (PagedABTree tree = PagedABTree.open(file, 4, 16, 256, 64)) {
+            for (int key = 0; key < 100000; key++) {
+                tree.insert(key);
+            }
+        }
+        try (PagedABTree tree = PagedABTree.open(file, 4, 16, 256, 8)) {
+            // At least 4 keys per node bounds the height of a 100000 key tree by log_4(100000) + 1
+            long before = tree.pageReads();
+            assertTrue(tree.contains(77777));
+            assertTrue(tree.pageReads() - before <= 10);
+        }
+    }
+
+    /**
+     * Test that freed pages are reused instead of growing the file
+     */
+    public void testFreedPagesAreReused() throws IOException {
+        try (PagedABTree tree = PagedABTree.open(file, 2, 4, 64, 8)) {
+            for (int round = 0; round < 5; round++) {
+                for (int key = 0; key < 1000; key++) {
+                    tree.insert(key);
+                }
+                for (int key = 0; key < 1000; key++) {
+                    assertTrue(tree.remove(key));
+                }
+            }
+        }
+        long size = Files.size(file);
+        try (PagedABTree tree = PagedABTree.open(file, 2, 4, 64, 8)) {
+            for (int key = 0; key < 1000; key++) {
+                tree.insert(key);
+            }
+        }
+        assertEquals(size, Files.size(file));
+    }
+
+    /**
+     * Test that reopening with a different shape is rejected
+     */
+    public void testReopenWithDifferentParameters() {
+        PagedABTree.open(file, 2, 4, 64, 8).close();
+        try {
+            PagedABTree.open(file, 2, 5, 64, 8);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Test that a buffer pool larger than one direct buffer can hold is rejected before the file is touched
+     */
+    public void testOversizedBufferPool() throws IOException {
+        Files.deleteIfExists(file);
+        try {
+            PagedABTree.open(file, 2, 4, 1 << 16, 1 << 15);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertFalse(Files.exists(file));
+    }
+}
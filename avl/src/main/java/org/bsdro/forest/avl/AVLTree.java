@@ -1,10 +1,301 @@
 package org.bsdro.forest.avl;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+/**
+ * AVL tree of distinct int keys. Every node also tracks the size of its subtree, which {@link #updateAggregates}
+ * maintains along with the height, so order statistics take O(log n) like lookups. Updates descend iteratively,
+ * recording the search path, and rebalance back up it only until a subtree keeps its height.
+ */
 public class AVLTree {
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
     private Node root;
+    private Node[] path = new Node[0]; // reused by insert and delete, grown with the height
+    private AVLTreeMetrics metrics; // null while disabled
+
+    /**
+     * Builds a perfectly balanced tree from ascending keys in linear time. Large inputs are split
+     * across the common fork/join pool.
+     *
+     * @throws IllegalArgumentException if the keys are not ascending or contain a duplicate
+     */
+    public static AVLTree fromSorted(int[] sortedKeys) {
+        return fromSorted(sortedKeys, false);
+    }
+
+    /**
+     * Like {@link #fromSorted(int[])}, but with {@code deduplicate} repeated keys are stored once
+     * instead of being rejected.
+     */
+    public static AVLTree fromSorted(int[] sortedKeys, boolean deduplicate) {
+        int[] keys = sortedKeys;
+        int n = 0;
+        for (int i = 0; i < sortedKeys.length; i++) {
+            if (i > 0 && sortedKeys[i] <= sortedKeys[i - 1]) {
+                if (sortedKeys[i] < sortedKeys[i - 1]) {
+                    throw new IllegalArgumentException("Keys must be in ascending order");
+                }
+                if (!deduplicate) {
+                    throw new IllegalArgumentException("Duplicate key");
+                }
+                if (keys == sortedKeys) {
+                    keys = Arrays.copyOf(sortedKeys, sortedKeys.length);
+                }
+                continue;
+            }
+            keys[n++] = sortedKeys[i];
+        }
+        AVLTree tree = new AVLTree();
+        BuildTask task = tree.new BuildTask(keys, 0, n - 1);
+        tree.root = n >= PARALLEL_THRESHOLD ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+        return tree;
+    }
+
+    private final class BuildTask extends RecursiveTask<Node> {
+        private final int[] keys;
+        private final int low;
+        private final int high;
+
+        BuildTask(int[] keys, int low, int high) {
+            this.keys = keys;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected Node compute() {
+            if (high - low < PARALLEL_THRESHOLD) {
+                return build(low, high);
+            }
+            int mid = (low + high) >>> 1;
+            BuildTask left = new BuildTask(keys, low, mid - 1);
+            left.fork();
+            Node node = new Node(keys[mid]);
+            node.right = new BuildTask(keys, mid + 1, high).compute();
+            node.left = left.join();
+            updateHeight(node);
+            return node;
+        }
+
+        private Node build(int low, int high) {
+            if (low > high) {
+                return null;
+            }
+            int mid = (low + high) >>> 1;
+            Node node = new Node(keys[mid]);
+            node.left = build(low, mid - 1);
+            node.right = build(mid + 1, high);
+            updateHeight(node);
+            return node;
+        }
+    }
+
+    /**
+     * Adds the key unless it is already present.
+     *
+     * @return whether the key was added
+     */
+    public boolean insert(int key) {
+        AVLTreeOperationEvent event = metrics != null ? metrics.begin() : null;
+        boolean inserted = insert(key, null);
+        if (event != null) {
+            metrics.end(event, "insert", key);
+        }
+        return inserted;
+    }
+
+    /**
+     * @return whether the key was present
+     */
+    public boolean delete(int key) {
+        AVLTreeOperationEvent event = metrics != null ? metrics.begin() : null;
+        boolean deleted = deleteKey(key);
+        if (event != null) {
+            metrics.end(event, "delete", key);
+        }
+        return deleted;
+    }
+
+    public boolean contains(int key) {
+        if (metrics == null) {
+            return find(key) != null;
+        }
+        AVLTreeOperationEvent event = metrics.begin();
+        boolean result = find(key) != null;
+        metrics.end(event, "contains", key);
+        return result;
+    }
+
+    /**
+     * Starts counting rotations and reporting slow operations to Flight Recorder, and returns the metrics.
+     * Until then the tree pays only a null check per operation and rotation.
+     */
+    public AVLTreeMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new AVLTreeMetrics(this);
+        }
+        return metrics;
+    }
+
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * The metrics of this tree, or null if they are disabled.
+     */
+    public AVLTreeMetrics metrics() {
+        return metrics;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Number of keys smaller than {@code key}.
+     */
+    public int rank(int key) {
+        int rank = 0;
+        Node current = root;
+        while (current != null) {
+            if (key <= current.key) {
+                current = current.left;
+            } else {
+                rank += size(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * The key with {@code k} smaller keys in the tree, that is the (k + 1)-th smallest.
+     *
+     * @throws IllegalArgumentException if k is not in [0, size())
+     */
+    public int select(int k) {
+        if (k < 0 || k >= size()) throw new IllegalArgumentException("Require 0 <= k < size()");
+        Node current = root;
+        while (true) {
+            int leftSize = size(current.left);
+            if (k < leftSize) {
+                current = current.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                current = current.right;
+            } else {
+                return current.key;
+            }
+        }
+    }
+
+    /**
+     * Number of keys k with {@code lo <= k <= hi}.
+     */
+    public int countInRange(int lo, int hi) {
+        if (lo > hi) {
+            return 0;
+        }
+        int upTo = hi == Integer.MAX_VALUE ? size() : rank(hi + 1);
+        return upTo - rank(lo);
+    }
+
+    /**
+     * Performs the given action for each key in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        Node[] stack = new Node[height(root) + 1];
+        int depth = 0;
+        Node current = root;
+        while (current != null || depth > 0) {
+            while (current != null) {
+                stack[depth++] = current;
+                current = current.left;
+            }
+            current = stack[--depth];
+            action.accept(current.key);
+            current = current.right;
+        }
+    }
+
+    /**
+     * Copies the keys into a read-only {@link FrozenAVLTree}, laid out for lookups that stay in cache.
+     * Later changes to this tree do not affect the copy.
+     */
+    public FrozenAVLTree freeze() {
+        return new FrozenAVLTree(root, size());
+    }
+
+    /**
+     * Adds the keys of {@code other} to this tree, leaving {@code other} unchanged. A key in both trees keeps
+     * the entry of this tree. Like the other set operations this splits this tree at the keys of {@code other}
+     * and joins the parts back, in O(m log(n/m + 1)) work for the smaller size m, and large trees are processed
+     * on the common fork/join pool.
+     *
+     * @throws IllegalArgumentException if {@code other} is a different kind of tree, see {@link #intersect}
+     */
+    public void union(AVLTree other) {
+        setOperation(SetOperation.UNION, other);
+    }
+
+    /**
+     * Removes the keys that are not in {@code other}, leaving {@code other} unchanged.
+     *
+     * @throws IllegalArgumentException if {@code other} is not of the same class, or is an
+     *                                  {@link AggregateAVLTree} with a different monoid
+     */
+    public void intersect(AVLTree other) {
+        setOperation(SetOperation.INTERSECT, other);
+    }
+
+    /**
+     * Removes the keys that are in {@code other}, leaving {@code other} unchanged.
+     *
+     * @throws IllegalArgumentException if {@code other} is a different kind of tree, see {@link #intersect}
+     */
+    public void difference(AVLTree other) {
+        setOperation(SetOperation.DIFFERENCE, other);
+    }
+
+    Node root() {
+        return root;
+    }
+
+    void setRoot(Node root) {
+        this.root = root;
+    }
+
+    Node newNode(int key) {
+        return new Node(key);
+    }
+
+    // Whether the nodes of other can be combined with ours, subclasses compare their node payloads too
+    boolean compatible(AVLTree other) {
+        return other.getClass() == getClass();
+    }
+
+    // Moves the entry of a deleted node's successor or of an upsert into the node, subclasses copy payloads too
+    void copyKey(Node target, Node source) {
+        target.key = source.key;
+    }
 
     void updateHeight(Node node) {
         node.height = 1 + Math.max(height(node.left), height(node.right));
+        updateAggregates(node);
+    }
+
+    // Recomputes what a node caches about its subtree apart from the height
+    void updateAggregates(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    int size(Node node) {
+        return node == null ? 0 : node.size;
     }
 
     int height(Node node) {
@@ -16,6 +307,9 @@ public class AVLTree {
     }
 
     Node rotateRight(Node node) {
+        if (metrics != null) {
+            metrics.rotation();
+        }
         Node left = node.left;
         Node leftRight = left.right;
         left.right = node;
@@ -26,6 +320,9 @@ public class AVLTree {
     }
 
     Node rotateLeft(Node node) {
+        if (metrics != null) {
+            metrics.rotation();
+        }
         Node right = node.right;
         Node rightLeft = right.left;
         right.left = node;
@@ -39,14 +336,14 @@ public class AVLTree {
         updateHeight(node);
         int balanceFactor = getBalanceFactor(node);
         if (balanceFactor > 1) {
-           if(height(node.right.right) > height(node.right.left)) {
+           if(height(node.right.right) >= height(node.right.left)) {
                node = rotateLeft(node);
            } else {
                node.right = rotateRight(node.right);
                node = rotateLeft(node);
            }
         } else if (balanceFactor < -1) {
-            if (height(node.left.left) > height(node.left.right)) {
+            if (height(node.left.left) >= height(node.left.right)) {
                 node = rotateRight(node);
             } else {
                 node.left = rotateLeft(node.left);
@@ -56,47 +353,273 @@ public class AVLTree {
         return node;
     }
 
-    Node insert(Node root, int key) {
-        if (root == null) {
-            return new Node(key);
-        } else if (root.key > key) {
-            root.left = insert(root.left, key);
-        } else if (root.key < key) {
-            root.right = insert(root.right, key);
+    /**
+     * Links {@code entry}, or a {@link #newNode} if it is null, in place of the missing child where the search
+     * for the key ends. A present key keeps its node, which copies the payload of a non-null entry.
+     *
+     * @return whether the key was added
+     */
+    boolean insert(int key, Node entry) {
+        Node[] path = path();
+        int depth = 0;
+        Node current = root;
+        while (current != null) {
+            if (current.key == key) {
+                if (entry != null) {
+                    copyKey(current, entry);
+                    updateAggregates(current);
+                    for (int i = depth - 1; i >= 0; i--) {
+                        updateAggregates(path[i]);
+                    }
+                }
+                return false;
+            }
+            path[depth++] = current;
+            current = key < current.key ? current.left : current.right;
+        }
+        Node node = entry != null ? entry : newNode(key);
+        if (depth == 0) {
+            root = node;
+        } else if (key < path[depth - 1].key) {
+            path[depth - 1].left = node;
         } else {
-            throw new IllegalArgumentException("Duplicate key");
+            path[depth - 1].right = node;
         }
-        return rebalance(root);
+        retrace(path, depth);
+        return true;
     }
 
-    Node delete(Node node, int key) {
-        if (node == null) {
-            return null;
-        } else if (node.key > key) {
-            node.left = delete(node.left, key);
-        } else if (node.key < key) {
-            node.right = delete(node.right, key);
+    private boolean deleteKey(int key) {
+        Node[] path = path();
+        int depth = 0;
+        Node current = root;
+        while (current != null && current.key != key) {
+            path[depth++] = current;
+            current = key < current.key ? current.left : current.right;
+        }
+        if (current == null) {
+            return false;
+        }
+        Node removed = current;
+        if (current.left != null && current.right != null) {
+            // Unlink the successor instead, after moving its entry up
+            path[depth++] = current;
+            removed = current.right;
+            while (removed.left != null) {
+                path[depth++] = removed;
+                removed = removed.left;
+            }
+            copyKey(current, removed);
+        }
+        replaceChild(depth > 0 ? path[depth - 1] : null, removed,
+                removed.left != null ? removed.left : removed.right);
+        retrace(path, depth);
+        return true;
+    }
+
+    // Rebalances the path bottom-up until a subtree keeps its height, above that only the aggregates change
+    private void retrace(Node[] path, int depth) {
+        int i = depth - 1;
+        for (; i >= 0; i--) {
+            Node node = path[i];
+            int height = node.height;
+            Node balanced = rebalance(node);
+            if (balanced != node) {
+                replaceChild(i > 0 ? path[i - 1] : null, node, balanced);
+            }
+            if (balanced.height == height) {
+                break;
+            }
+        }
+        for (i--; i >= 0; i--) {
+            updateAggregates(path[i]);
+        }
+    }
+
+    private void replaceChild(Node parent, Node child, Node replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == child) {
+            parent.left = replacement;
         } else {
-            if (node.left == null || node.right == null) {
-                node = node.left == null ? node.right : node.left;
-            } else {
-                Node temp = minValueNode(node.right);
-                node.key = temp.key;
-                node.right = delete(node.right, node.key);
+            parent.right = replacement;
+        }
+    }
+
+    private Node[] path() {
+        int needed = height(root) + 2;
+        if (path.length < needed) {
+            path = new Node[needed + 8];
+        }
+        return path;
+    }
+
+    private enum SetOperation { UNION, INTERSECT, DIFFERENCE }
+
+    private void setOperation(SetOperation operation, AVLTree other) {
+        if (!compatible(other)) {
+            throw new IllegalArgumentException("Require a tree of the same kind");
+        }
+        if (other == this) {
+            if (operation == SetOperation.DIFFERENCE) {
+                root = null;
             }
+            return;
         }
-        if (node != null) {
-            node = rebalance(node);
+        SetOperationTask task = new SetOperationTask(operation, root, other.root);
+        root = size(root) + other.size() >= PARALLEL_THRESHOLD ? ForkJoinPool.commonPool().invoke(task)
+                : task.compute();
+    }
+
+    private final class SetOperationTask extends RecursiveTask<Node> {
+        private final SetOperation operation;
+        private final Node mine;
+        private final Node theirs;
+
+        SetOperationTask(SetOperation operation, Node mine, Node theirs) {
+            this.operation = operation;
+            this.mine = mine;
+            this.theirs = theirs;
+        }
+
+        @Override
+        protected Node compute() {
+            if (mine == null || theirs == null || size(mine) + size(theirs) < PARALLEL_THRESHOLD) {
+                return setOperation(operation, mine, theirs);
+            }
+            Split split = split(mine, theirs.key);
+            SetOperationTask left = new SetOperationTask(operation, split.left, theirs.left);
+            left.fork();
+            Node right = new SetOperationTask(operation, split.right, theirs.right).compute();
+            return combine(operation, split, theirs, left.join(), right);
         }
-        return node;
     }
 
-    Node minValueNode(Node node) {
-        Node current = node;
-        while (current.left != null) {
-            current = current.left;
+    // Combines a subtree of this tree, whose nodes it reuses, with a subtree of the other tree, which it only reads
+    private Node setOperation(SetOperation operation, Node mine, Node theirs) {
+        if (theirs == null) {
+            return operation == SetOperation.INTERSECT ? null : mine;
         }
-        return current;
+        if (mine == null) {
+            return operation == SetOperation.UNION ? copy(theirs) : null;
+        }
+        Split split = split(mine, theirs.key);
+        Node left = setOperation(operation, split.left, theirs.left);
+        Node right = setOperation(operation, split.right, theirs.right);
+        return combine(operation, split, theirs, left, right);
+    }
+
+    // Joins the results for both sides of the key of the other tree's node, with the key where the result keeps it
+    private Node combine(SetOperation operation, Split split, Node theirs, Node left, Node right) {
+        if (operation == SetOperation.UNION) {
+            return join(left, split.match != null ? split.match : copyNode(theirs), right);
+        }
+        if (operation == SetOperation.INTERSECT && split.match != null) {
+            return join(left, split.match, right);
+        }
+        return join(left, right);
+    }
+
+    // The parts of a subtree below and above a key, and the node holding the key if there was one
+    private static final class Split {
+        Node left;
+        Node right;
+        Node match;
+    }
+
+    private Split split(Node node, int key) {
+        if (node == null) {
+            return new Split();
+        }
+        Split split;
+        if (key < node.key) {
+            split = split(node.left, key);
+            split.right = join(split.right, node, node.right);
+        } else if (key > node.key) {
+            split = split(node.right, key);
+            split.left = join(node.left, node, split.left);
+        } else {
+            split = new Split();
+            split.left = node.left;
+            split.right = node.right;
+            split.match = node;
+        }
+        return split;
+    }
+
+    /**
+     * Links {@code mid} between two AVL trees whose keys are smaller and larger than its key, in time
+     * proportional to the difference of their heights.
+     */
+    Node join(Node left, Node mid, Node right) {
+        if (height(left) > height(right) + 1) {
+            left.right = join(left.right, mid, right);
+            return rebalance(left);
+        }
+        if (height(right) > height(left) + 1) {
+            right.left = join(left, mid, right.left);
+            return rebalance(right);
+        }
+        mid.left = left;
+        mid.right = right;
+        updateHeight(mid);
+        return mid;
+    }
+
+    // Join without a middle key, the nearest key of the lower tree takes its place
+    private Node join(Node left, Node right) {
+        if (left == null || right == null) {
+            return left == null ? right : left;
+        }
+        if (height(left) < height(right)) {
+            Split first = removeFirst(right);
+            return join(left, first.match, first.right);
+        }
+        Split last = removeLast(left);
+        return join(last.left, last.match, right);
+    }
+
+    private Split removeLast(Node node) {
+        if (node.right == null) {
+            Split split = new Split();
+            split.left = node.left;
+            split.match = node;
+            return split;
+        }
+        Split split = removeLast(node.right);
+        node.right = split.left;
+        split.left = rebalance(node);
+        return split;
+    }
+
+    private Split removeFirst(Node node) {
+        if (node.left == null) {
+            Split split = new Split();
+            split.right = node.right;
+            split.match = node;
+            return split;
+        }
+        Split split = removeFirst(node.left);
+        node.left = split.right;
+        split.right = rebalance(node);
+        return split;
+    }
+
+    private Node copy(Node source) {
+        if (source == null) {
+            return null;
+        }
+        Node node = copyNode(source);
+        node.left = copy(source.left);
+        node.right = copy(source.right);
+        updateHeight(node);
+        return node;
+    }
+
+    private Node copyNode(Node source) {
+        Node node = newNode(source.key);
+        copyKey(node, source);
+        return node;
     }
 
     Node find(int key) {
@@ -105,7 +628,7 @@ public class AVLTree {
             if (current.key == key) {
                 break;
             }
-            current = key < current.key ? current.right : current.left;
+            current = key < current.key ? current.left : current.right;
         }
         return current;
     }
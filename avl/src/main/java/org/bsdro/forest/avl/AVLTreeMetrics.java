@@ -0,0 +1,73 @@
+package org.bsdro.forest.avl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation counters and shape gauges of one {@link AVLTree}, see {@link AVLTree#enableMetrics()}. Counters are
+ * striped {@link LongAdder}s, so reading them from a monitoring thread does not slow the tree down.
+ */
+public final class AVLTreeMetrics {
+    private final AVLTree tree;
+    final LongAdder operations = new LongAdder();
+    final LongAdder rotations = new LongAdder();
+
+    // Rotation count when the operation in progress began, only touched by the thread running it. Rotations
+    // themselves may happen on fork/join workers and only ever go to the adder
+    private long rotationsAtBegin;
+
+    AVLTreeMetrics(AVLTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Inserts, deletes and lookups run on the tree.
+     */
+    public long operations() {
+        return operations.sum();
+    }
+
+    /**
+     * Single rotations, a double rotation counts twice.
+     */
+    public long rotations() {
+        return rotations.sum();
+    }
+
+    public void reset() {
+        operations.reset();
+        rotations.reset();
+    }
+
+    /**
+     * Number of levels, 0 for an empty tree.
+     */
+    public int height() {
+        return tree.height(tree.root()) + 1;
+    }
+
+    public int nodeCount() {
+        return tree.size();
+    }
+
+    void rotation() {
+        rotations.increment();
+    }
+
+    AVLTreeOperationEvent begin() {
+        operations.increment();
+        rotationsAtBegin = rotations.sum();
+        AVLTreeOperationEvent event = new AVLTreeOperationEvent();
+        event.begin();
+        return event;
+    }
+
+    void end(AVLTreeOperationEvent event, String operation, int key) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.key = key;
+            event.rotations = (int) (rotations.sum() - rotationsAtBegin);
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.bsdro.forest.avl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for an {@link AVLTree} operation that took longer than the threshold of the recording,
+ * 1 ms unless configured otherwise. Only emitted while the tree has metrics enabled.
+ */
+@Name("org.bsdro.forest.avl.Operation")
+@Label("AVLTree Operation")
+@Category({"Forest", "AVLTree"})
+@Description("Slow AVL tree operation with the rotations it caused")
+@Threshold("1 ms")
+@StackTrace(false)
+class AVLTreeOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    int key;
+
+    @Label("Rotations")
+    int rotations;
+}
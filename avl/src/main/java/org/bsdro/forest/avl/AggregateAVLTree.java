@@ -0,0 +1,131 @@
+package org.bsdro.forest.avl;
+
+/**
+ * {@link AVLTree} whose keys carry a {@code long} value and whose nodes cache the {@link LongMonoid} summary of
+ * the values in their subtree. The summary is recomputed in {@link #updateAggregates}, which rotations, rebalancing,
+ * insert and delete already call on every node whose subtree changes, so {@link #aggregate} combines O(log n)
+ * cached summaries instead of visiting every key in the range.
+ */
+public class AggregateAVLTree extends AVLTree {
+    private final LongMonoid monoid;
+
+    static final class AggregateNode extends Node {
+        long value;
+        long summary;
+
+        AggregateNode(int key, long value) {
+            super(key);
+            this.value = value;
+            this.summary = value;
+        }
+    }
+
+    public AggregateAVLTree(LongMonoid monoid) {
+        this.monoid = monoid;
+    }
+
+    /**
+     * Inserts the key with itself as its value, or sets the value of a present key to the key.
+     */
+    @Override
+    public boolean insert(int key) {
+        return insert(key, key);
+    }
+
+    /**
+     * Inserts the key with the value, or replaces the value of a present key.
+     *
+     * @return whether the key was added
+     */
+    public boolean insert(int key, long value) {
+        return insert(key, new AggregateNode(key, value));
+    }
+
+    /**
+     * Value of the key, or the identity of the monoid if it is absent.
+     */
+    public long get(int key) {
+        Node node = find(key);
+        return node == null ? monoid.identity() : ((AggregateNode) node).value;
+    }
+
+    /**
+     * Summary of the values of all keys k with {@code lo <= k <= hi}, combined in key order.
+     */
+    public long aggregate(int lo, int hi) {
+        Node node = root();
+        // Descend to the first node inside the range, below it the range splits into a suffix and a prefix
+        while (node != null && (node.key < lo || node.key > hi)) {
+            node = node.key < lo ? node.right : node.left;
+        }
+        if (node == null || lo > hi) {
+            return monoid.identity();
+        }
+        long suffix = suffix(node.left, lo);
+        long prefix = prefix(node.right, hi);
+        return monoid.combine(monoid.combine(suffix, ((AggregateNode) node).value), prefix);
+    }
+
+    /**
+     * Summary of all values.
+     */
+    public long aggregate() {
+        return summary(root());
+    }
+
+    // Summary of the keys >= lo in the subtree
+    private long suffix(Node node, int lo) {
+        long result = monoid.identity();
+        while (node != null) {
+            if (node.key >= lo) {
+                result = monoid.combine(((AggregateNode) node).value, monoid.combine(summary(node.right), result));
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    // Summary of the keys <= hi in the subtree
+    private long prefix(Node node, int hi) {
+        long result = monoid.identity();
+        while (node != null) {
+            if (node.key <= hi) {
+                result = monoid.combine(result, monoid.combine(summary(node.left), ((AggregateNode) node).value));
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    private long summary(Node node) {
+        return node == null ? monoid.identity() : ((AggregateNode) node).summary;
+    }
+
+    @Override
+    Node newNode(int key) {
+        return new AggregateNode(key, key);
+    }
+
+    @Override
+    boolean compatible(AVLTree other) {
+        return super.compatible(other) && monoid.equals(((AggregateAVLTree) other).monoid);
+    }
+
+    @Override
+    void copyKey(Node target, Node source) {
+        super.copyKey(target, source);
+        ((AggregateNode) target).value = ((AggregateNode) source).value;
+    }
+
+    @Override
+    void updateAggregates(Node node) {
+        super.updateAggregates(node);
+        AggregateNode aggregateNode = (AggregateNode) node;
+        aggregateNode.summary = monoid.combine(monoid.combine(summary(node.left), aggregateNode.value),
+                summary(node.right));
+    }
+}
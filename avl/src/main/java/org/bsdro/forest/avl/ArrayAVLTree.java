@@ -0,0 +1,213 @@
+package org.bsdro.forest.avl;
+
+import java.util.Arrays;
+
+/**
+ * AVL tree that keeps its nodes in parallel primitive arrays instead of {@link Node} objects.
+ * A node is a slot index into {@code keys}, {@code heights}, {@code left} and {@code right},
+ * {@link #NIL} marks a missing child and deleted slots are recycled through a free list
+ * threaded through {@code left}.
+ */
+public class ArrayAVLTree {
+    static final int NIL = -1;
+
+    private int[] keys;
+    private byte[] heights;
+    private int[] left;
+    private int[] right;
+
+    private int root = NIL;
+    private int size;
+    private int allocated; // slots handed out so far, free or not
+    private int freeList = NIL;
+
+    public ArrayAVLTree() {
+        this(16);
+    }
+
+    public ArrayAVLTree(int initialCapacity) {
+        if (initialCapacity < 1) throw new IllegalArgumentException("Require initialCapacity >= 1");
+        keys = new int[initialCapacity];
+        heights = new byte[initialCapacity];
+        left = new int[initialCapacity];
+        right = new int[initialCapacity];
+    }
+
+    public void insert(int key) {
+        root = insert(root, key);
+    }
+
+    public void delete(int key) {
+        root = delete(root, key);
+    }
+
+    public boolean contains(int key) {
+        return find(key) != NIL;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int root() {
+        return root;
+    }
+
+    int key(int node) {
+        return keys[node];
+    }
+
+    int left(int node) {
+        return left[node];
+    }
+
+    int right(int node) {
+        return right[node];
+    }
+
+    void updateHeight(int node) {
+        heights[node] = (byte) (1 + Math.max(height(left[node]), height(right[node])));
+    }
+
+    int height(int node) {
+        return node == NIL ? -1 : heights[node];
+    }
+
+    int getBalanceFactor(int node) {
+        return node == NIL ? 0 : height(right[node]) - height(left[node]);
+    }
+
+    int rotateRight(int node) {
+        int l = left[node];
+        int leftRight = right[l];
+        right[l] = node;
+        left[node] = leftRight;
+        updateHeight(node);
+        updateHeight(l);
+        return l;
+    }
+
+    int rotateLeft(int node) {
+        int r = right[node];
+        int rightLeft = left[r];
+        left[r] = node;
+        right[node] = rightLeft;
+        updateHeight(node);
+        updateHeight(r);
+        return r;
+    }
+
+    int rebalance(int node) {
+        updateHeight(node);
+        int balanceFactor = getBalanceFactor(node);
+        if (balanceFactor > 1) {
+            if (height(right[right[node]]) >= height(left[right[node]])) {
+                node = rotateLeft(node);
+            } else {
+                right[node] = rotateRight(right[node]);
+                node = rotateLeft(node);
+            }
+        } else if (balanceFactor < -1) {
+            if (height(left[left[node]]) >= height(right[left[node]])) {
+                node = rotateRight(node);
+            } else {
+                left[node] = rotateLeft(left[node]);
+                node = rotateRight(node);
+            }
+        }
+        return node;
+    }
+
+    int insert(int node, int key) {
+        if (node == NIL) {
+            return allocate(key);
+        } else if (keys[node] > key) {
+            // Evaluate the child first, allocating may replace the arrays
+            int child = insert(left[node], key);
+            left[node] = child;
+        } else if (keys[node] < key) {
+            int child = insert(right[node], key);
+            right[node] = child;
+        } else {
+            throw new IllegalArgumentException("Duplicate key");
+        }
+        return rebalance(node);
+    }
+
+    int delete(int node, int key) {
+        if (node == NIL) {
+            return NIL;
+        } else if (keys[node] > key) {
+            left[node] = delete(left[node], key);
+        } else if (keys[node] < key) {
+            right[node] = delete(right[node], key);
+        } else {
+            if (left[node] == NIL || right[node] == NIL) {
+                int removed = node;
+                node = left[node] == NIL ? right[node] : left[node];
+                release(removed);
+            } else {
+                int temp = minValueNode(right[node]);
+                keys[node] = keys[temp];
+                right[node] = delete(right[node], keys[node]);
+            }
+        }
+        if (node != NIL) {
+            node = rebalance(node);
+        }
+        return node;
+    }
+
+    int minValueNode(int node) {
+        int current = node;
+        while (left[current] != NIL) {
+            current = left[current];
+        }
+        return current;
+    }
+
+    int find(int key) {
+        int current = root;
+        while (current != NIL) {
+            if (keys[current] == key) {
+                break;
+            }
+            current = key < keys[current] ? left[current] : right[current];
+        }
+        return current;
+    }
+
+    private int allocate(int key) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (allocated == keys.length) {
+                grow();
+            }
+            node = allocated++;
+        }
+        keys[node] = key;
+        heights[node] = 0;
+        left[node] = NIL;
+        right[node] = NIL;
+        size++;
+        return node;
+    }
+
+    private void release(int node) {
+        left[node] = freeList;
+        right[node] = NIL;
+        freeList = node;
+        size--;
+    }
+
+    private void grow() {
+        int capacity = keys.length + (keys.length >> 1) + 1;
+        keys = Arrays.copyOf(keys, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+    }
+}
@@ -0,0 +1,126 @@
+package org.bsdro.forest.avl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable copy of an {@link AVLTree} in Eytzinger order: the keys of a complete binary search tree stored
+ * breadth-first in one array, the children of slot {@code i} at {@code 2i} and {@code 2i + 1}. A lookup walks
+ * down without a branch on the comparison, and the top levels share a few cache lines.
+ */
+public final class FrozenAVLTree {
+    /**
+     * Probes advanced in lockstep by {@link #containsAll}, so their cache misses overlap.
+     */
+    static final int LOOKUP_GROUP = 8;
+
+    private final int[] keys; // slot 0 unused
+    private final int size;
+
+    FrozenAVLTree(Node root, int size) {
+        this.size = size;
+        this.keys = new int[size + 1];
+        int[] sorted = new int[size];
+        Node[] stack = new Node[Math.max(1, 2 * height(size))];
+        int depth = 0;
+        int n = 0;
+        Node current = root;
+        while (current != null || depth > 0) {
+            while (current != null) {
+                stack[depth++] = current;
+                current = current.left;
+            }
+            current = stack[--depth];
+            sorted[n++] = current.key;
+            current = current.right;
+        }
+        fill(sorted, 0, 1);
+    }
+
+    private static int height(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    private int fill(int[] sorted, int next, int slot) {
+        if (slot <= size) {
+            next = fill(sorted, next, 2 * slot);
+            keys[slot] = sorted[next++];
+            next = fill(sorted, next, 2 * slot + 1);
+        }
+        return next;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int key) {
+        int i = 1;
+        while (i <= size) {
+            i = 2 * i + (keys[i] < key ? 1 : 0);
+        }
+        i >>>= Integer.numberOfTrailingZeros(~i) + 1;
+        return i != 0 && keys[i] == key;
+    }
+
+    /**
+     * Looks up every probe, splitting large batches across the common fork/join pool.
+     */
+    public boolean[] containsAll(int[] probes) {
+        boolean[] result = new boolean[probes.length];
+        LookupTask task = new LookupTask(probes, result, 0, probes.length);
+        if (probes.length >= AVLTree.PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return result;
+    }
+
+    private void lookup(int[] probes, boolean[] result, int from, int to) {
+        int levels = height(size);
+        int[] slots = new int[LOOKUP_GROUP];
+        for (int start = from; start < to; start += LOOKUP_GROUP) {
+            int count = Math.min(LOOKUP_GROUP, to - start);
+            for (int j = 0; j < count; j++) {
+                slots[j] = 1;
+            }
+            for (int level = 0; level < levels; level++) {
+                for (int j = 0; j < count; j++) {
+                    int i = slots[j];
+                    if (i <= size) {
+                        slots[j] = 2 * i + (keys[i] < probes[start + j] ? 1 : 0);
+                    }
+                }
+            }
+            for (int j = 0; j < count; j++) {
+                int i = slots[j] >>> (Integer.numberOfTrailingZeros(~slots[j]) + 1);
+                result[start + j] = i != 0 && keys[i] == probes[start + j];
+            }
+        }
+    }
+
+    private final class LookupTask extends RecursiveAction {
+        private final int[] probes;
+        private final boolean[] result;
+        private final int from;
+        private final int to;
+
+        LookupTask(int[] probes, boolean[] result, int from, int to) {
+            this.probes = probes;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < AVLTree.PARALLEL_THRESHOLD) {
+                lookup(probes, result, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LookupTask(probes, result, from, mid), new LookupTask(probes, result, mid, to));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.bsdro.forest.avl;
+
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Associative combiner of {@code long} values with an identity element, used to summarise key ranges in an
+ * {@link AggregateAVLTree}. It need not be commutative, values are always combined in key order.
+ */
+public interface LongMonoid {
+    LongMonoid SUM = of(0, Long::sum);
+    LongMonoid MIN = of(Long.MAX_VALUE, Math::min);
+    LongMonoid MAX = of(Long.MIN_VALUE, Math::max);
+
+    long identity();
+
+    long combine(long left, long right);
+
+    static LongMonoid of(long identity, LongBinaryOperator combiner) {
+        return new LongMonoid() {
+            @Override
+            public long identity() {
+                return identity;
+            }
+
+            @Override
+            public long combine(long left, long right) {
+                return combiner.applyAsLong(left, right);
+            }
+        };
+    }
+}
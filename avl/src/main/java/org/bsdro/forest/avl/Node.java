@@ -3,10 +3,12 @@ package org.bsdro.forest.avl;
 public class Node {
     int key;
     int height;
+    int size; // keys in this subtree, fits in the padding of the object layout
     Node left;
     Node right;
 
     public Node(int key) {
         this.key = key;
+        this.size = 1;
     }
 }
@@ -0,0 +1,230 @@
+package org.bsdro.forest.avl;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * AVL tree with immutable nodes. An update copies the path from the root down to the changed node, rebalances
+ * the copies and publishes the new root with a CAS, retrying if another writer got there first. A
+ * {@link Snapshot} is just a root reference: it costs O(1), never changes and needs no locks to read. Versions
+ * nobody references any more are reclaimed by the garbage collector.
+ */
+public class PersistentAVLTree {
+
+    static final class PersistentNode {
+        final int key;
+        final int height;
+        final int size;
+        final PersistentNode left;
+        final PersistentNode right;
+
+        PersistentNode(int key, PersistentNode left, PersistentNode right) {
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private final AtomicReference<PersistentNode> root = new AtomicReference<>();
+
+    /**
+     * @return false if the key was already present
+     */
+    public boolean insert(int key) {
+        while (true) {
+            PersistentNode current = root.get();
+            PersistentNode updated = insert(current, key);
+            if (updated == current) {
+                return false;
+            }
+            if (root.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return false if the key was not present
+     */
+    public boolean delete(int key) {
+        while (true) {
+            PersistentNode current = root.get();
+            PersistentNode updated = delete(current, key);
+            if (updated == current) {
+                return false;
+            }
+            if (root.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean contains(int key) {
+        return find(root.get(), key) != null;
+    }
+
+    public int size() {
+        return size(root.get());
+    }
+
+    /**
+     * Point-in-time view of the tree, unaffected by later updates.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(root.get());
+    }
+
+    static int height(PersistentNode node) {
+        return node == null ? -1 : node.height;
+    }
+
+    static int size(PersistentNode node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // Builds the node for key over the given subtrees, rotating if they differ in height by two
+    static PersistentNode rebalance(int key, PersistentNode left, PersistentNode right) {
+        int balanceFactor = height(right) - height(left);
+        if (balanceFactor > 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new PersistentNode(right.key, new PersistentNode(key, left, right.left), right.right);
+            }
+            PersistentNode rightLeft = right.left;
+            return new PersistentNode(rightLeft.key,
+                    new PersistentNode(key, left, rightLeft.left),
+                    new PersistentNode(right.key, rightLeft.right, right.right));
+        } else if (balanceFactor < -1) {
+            if (height(left.left) >= height(left.right)) {
+                return new PersistentNode(left.key, left.left, new PersistentNode(key, left.right, right));
+            }
+            PersistentNode leftRight = left.right;
+            return new PersistentNode(leftRight.key,
+                    new PersistentNode(left.key, left.left, leftRight.left),
+                    new PersistentNode(key, leftRight.right, right));
+        }
+        return new PersistentNode(key, left, right);
+    }
+
+    // Returns node itself when the key is already present, so callers can tell nothing changed
+    static PersistentNode insert(PersistentNode node, int key) {
+        if (node == null) {
+            return new PersistentNode(key, null, null);
+        } else if (node.key > key) {
+            PersistentNode left = insert(node.left, key);
+            return left == node.left ? node : rebalance(node.key, left, node.right);
+        } else if (node.key < key) {
+            PersistentNode right = insert(node.right, key);
+            return right == node.right ? node : rebalance(node.key, node.left, right);
+        }
+        return node;
+    }
+
+    // Returns node itself when the key is absent
+    static PersistentNode delete(PersistentNode node, int key) {
+        if (node == null) {
+            return null;
+        } else if (node.key > key) {
+            PersistentNode left = delete(node.left, key);
+            return left == node.left ? node : rebalance(node.key, left, node.right);
+        } else if (node.key < key) {
+            PersistentNode right = delete(node.right, key);
+            return right == node.right ? node : rebalance(node.key, node.left, right);
+        }
+        if (node.left == null || node.right == null) {
+            return node.left == null ? node.right : node.left;
+        }
+        int successor = minValueNode(node.right).key;
+        return rebalance(successor, node.left, delete(node.right, successor));
+    }
+
+    static PersistentNode minValueNode(PersistentNode node) {
+        PersistentNode current = node;
+        while (current.left != null) {
+            current = current.left;
+        }
+        return current;
+    }
+
+    static PersistentNode find(PersistentNode node, int key) {
+        PersistentNode current = node;
+        while (current != null && current.key != key) {
+            current = key < current.key ? current.left : current.right;
+        }
+        return current;
+    }
+
+    public static final class Snapshot {
+        private final PersistentNode root;
+
+        Snapshot(PersistentNode root) {
+            this.root = root;
+        }
+
+        PersistentNode root() {
+            return root;
+        }
+
+        public boolean contains(int key) {
+            return find(root, key) != null;
+        }
+
+        public int size() {
+            return PersistentAVLTree.size(root);
+        }
+
+        /**
+         * Keys in ascending order.
+         */
+        public PrimitiveIterator.OfInt iterator() {
+            return new InOrderIterator(root);
+        }
+
+        public void forEach(IntConsumer action) {
+            forEach(root, action);
+        }
+
+        private static void forEach(PersistentNode node, IntConsumer action) {
+            if (node != null) {
+                forEach(node.left, action);
+                action.accept(node.key);
+                forEach(node.right, action);
+            }
+        }
+    }
+
+    private static final class InOrderIterator implements PrimitiveIterator.OfInt {
+        // AVL height is below 1.45 log2(n + 2), 64 entries cover any int-sized tree
+        private final PersistentNode[] stack = new PersistentNode[64];
+        private int depth;
+
+        InOrderIterator(PersistentNode root) {
+            pushLeftSpine(root);
+        }
+
+        private void pushLeftSpine(PersistentNode node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            PersistentNode node = stack[--depth];
+            pushLeftSpine(node.right);
+            return node.key;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.bsdro.forest.avl;
+
+import junit.framework.TestCase;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Test class for the AVLTree metrics
+ */
+public class AVLTreeMetricsTest extends TestCase {
+
+    /**
+     * Test that rotations and operations are counted once enabled
+     */
+    public void testCounters() {
+        AVLTree tree = new AVLTree();
+        tree.insert(0);
+        assertNull(tree.metrics());
+        AVLTreeMetrics metrics = tree.enableMetrics();
+        tree.insert(1);
+        tree.insert(2); // single left rotation
+        tree.insert(-2);
+        tree.insert(-1); // double rotation
+        assertEquals(4, metrics.operations());
+        assertEquals(3, metrics.rotations());
+        assertTrue(tree.contains(-1));
+        assertEquals(5, metrics.operations());
+        assertEquals(5, metrics.nodeCount());
+        assertEquals(3, metrics.height());
+        metrics.reset();
+        assertEquals(0, metrics.rotations());
+        tree.disableMetrics();
+        assertNull(tree.metrics());
+    }
+
+    /**
+     * Test that rotations made by fork/join workers during a parallel set operation are all counted
+     */
+    public void testRotationsFromParallelSetOperation() {
+        AVLTree tree = new AVLTree();
+        AVLTree other = new AVLTree();
+        // Joining subtrees of very different sizes is what makes the set operations rotate
+        for (int key = 0; key < 4 * AVLTree.PARALLEL_THRESHOLD; key++) {
+            (key % 1000 == 0 || key < 100 ? tree : other).insert(key);
+        }
+        AVLTreeMetrics metrics = tree.enableMetrics();
+        tree.union(other);
+        assertEquals(0, metrics.operations());
+        assertTrue(metrics.rotations() > 0);
+        long rotations = metrics.rotations();
+        tree.insert(-1);
+        assertEquals(1, metrics.operations());
+        assertTrue(metrics.rotations() >= rotations);
+    }
+
+    /**
+     * Test that operations above the threshold reach Flight Recorder
+     */
+    public void testFlightRecorderEvents() throws IOException {
+        Path file = Files.createTempFile("avltree", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(AVLTreeOperationEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            AVLTree tree = new AVLTree();
+            tree.enableMetrics();
+            tree.insert(1);
+            tree.insert(2);
+            tree.insert(3);
+            tree.delete(2);
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            events.removeIf(event -> !event.getEventType().getName().equals("org.bsdro.forest.avl.Operation"));
+            assertEquals(4, events.size());
+            assertEquals(1, events.get(2).getInt("rotations"));
+            assertEquals("delete", events.get(3).getString("operation"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package org.bsdro.forest.avl;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for AVLTree
+ */
+public class AVLTreeTest extends TestCase {
+
+    private AVLTree tree;
+
+    @Override
+    protected void setUp() {
+        tree = new AVLTree();
+    }
+
+    /**
+     * Test inserting keys and finding them through the public entry points
+     */
+    public void testInsertAndContains() {
+        for (int key : new int[]{30, 10, 20, 40, 50, 5}) {
+            tree.insert(key);
+        }
+        for (int key : new int[]{30, 10, 20, 40, 50, 5}) {
+            assertTrue("Tree should contain key " + key, tree.contains(key));
+        }
+        assertFalse(tree.contains(25));
+        assertEquals(20, tree.find(20).key);
+        assertNull(tree.find(25));
+    }
+
+    /**
+     * Test that a duplicate insert and a missing delete report false and leave the tree unchanged
+     */
+    public void testInsertDuplicateAndDeleteMissing() {
+        assertTrue(tree.insert(10));
+        assertFalse(tree.insert(10));
+        assertFalse(tree.delete(20));
+        assertEquals(1, tree.size());
+        assertTrue(tree.delete(10));
+        assertFalse(tree.delete(10));
+        assertEquals(0, tree.size());
+    }
+
+    /**
+     * Test random inserts and deletes against a reference set
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        TreeSet<Integer> reference = new TreeSet<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(reference.remove(key), tree.delete(key));
+            } else {
+                assertEquals(reference.add(key), tree.insert(key));
+            }
+            if (i % 1000 == 0) {
+                assertEquals(reference.size(), checkBalanced(tree.root()));
+            }
+        }
+        for (int key = 0; key < 5000; key++) {
+            assertEquals("contains(" + key + ")", reference.contains(key), tree.contains(key));
+        }
+    }
+
+    /**
+     * Test building balanced trees from sorted keys of many sizes
+     */
+    public void testFromSortedBuildsBalancedTree() {
+        for (int n = 0; n < 600; n++) {
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = 2 * i;
+            }
+            AVLTree built = AVLTree.fromSorted(keys);
+            assertEquals("size for n " + n, n, checkBalanced(built.root()));
+            for (int i = 0; i < n; i++) {
+                assertTrue(built.contains(2 * i));
+                assertFalse(built.contains(2 * i + 1));
+            }
+        }
+    }
+
+    /**
+     * Test that a large input takes the fork/join path and still produces a valid tree
+     */
+    public void testFromSortedInParallel() {
+        int n = 5 * AVLTree.PARALLEL_THRESHOLD + 3;
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        AVLTree built = AVLTree.fromSorted(keys);
+        assertEquals(n, checkBalanced(built.root()));
+        built.insert(-1);
+        built.delete(n / 2);
+        assertTrue(built.contains(-1));
+        assertFalse(built.contains(n / 2));
+    }
+
+    /**
+     * Test duplicate handling when building from sorted keys
+     */
+    public void testFromSortedDuplicates() {
+        int[] keys = {1, 2, 2, 3, 3, 3, 4};
+        AVLTree built = AVLTree.fromSorted(keys, true);
+        assertEquals(4, checkBalanced(built.root()));
+        assertEquals("Input should be left untouched", 2, keys[2]);
+        try {
+            AVLTree.fromSorted(keys);
+            fail("Should throw IllegalArgumentException for a duplicate key");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+        try {
+            AVLTree.fromSorted(new int[]{1, 3, 2});
+            fail("Should throw IllegalArgumentException for unsorted keys");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test rank, select and countInRange against a TreeSet while keys come and go
+     */
+    public void testOrderStatisticsMatchReferenceSet() {
+        Random random = new Random(9);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(4000) - 2000;
+            if (random.nextInt(3) > 0) {
+                if (expected.add(key)) {
+                    tree.insert(key);
+                }
+            } else if (expected.remove(key)) {
+                tree.delete(key);
+            }
+            if (i % 100 == 0) {
+                assertEquals(expected.size(), checkBalanced(tree.root()));
+                int probe = random.nextInt(4400) - 2200;
+                assertEquals(expected.headSet(probe).size(), tree.rank(probe));
+                int lo = random.nextInt(4400) - 2200;
+                int hi = lo + random.nextInt(1000);
+                assertEquals(expected.subSet(lo, true, hi, true).size(), tree.countInRange(lo, hi));
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        int k = 0;
+        for (int key : expected) {
+            assertEquals(key, tree.select(k++));
+        }
+    }
+
+    /**
+     * Test that forEach visits every key in ascending order
+     */
+    public void testForEach() {
+        List<Integer> visited = new ArrayList<>();
+        tree.forEach(visited::add);
+        assertTrue(visited.isEmpty());
+        Random random = new Random(12);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt();
+            expected.add(key);
+            tree.insert(key);
+        }
+        tree.forEach(visited::add);
+        assertEquals(new ArrayList<>(expected), visited);
+    }
+
+    /**
+     * Test union, intersection and difference against TreeSets for trees of very different sizes and overlaps
+     */
+    public void testSetOperationsMatchReferenceSets() {
+        Random random = new Random(22);
+        int[][] shapes = {{0, 0}, {0, 50}, {50, 0}, {1, 1000}, {1000, 1}, {300, 300}, {2000, 40}, {40, 2000}};
+        for (int[] shape : shapes) {
+            for (int range : new int[]{100, 5000}) {
+                TreeSet<Integer> mine = randomSet(random, shape[0], range);
+                TreeSet<Integer> theirs = randomSet(random, shape[1], range);
+                for (int operation = 0; operation < 3; operation++) {
+                    AVLTree result = treeOf(mine);
+                    AVLTree other = treeOf(theirs);
+                    TreeSet<Integer> expected = new TreeSet<>(mine);
+                    if (operation == 0) {
+                        result.union(other);
+                        expected.addAll(theirs);
+                    } else if (operation == 1) {
+                        result.intersect(other);
+                        expected.retainAll(theirs);
+                    } else {
+                        result.difference(other);
+                        expected.removeAll(theirs);
+                    }
+                    assertEquals(expected.size(), checkBalanced(result.root()));
+                    assertEquals(new ArrayList<>(expected), keys(result));
+                    assertEquals(theirs.size(), checkBalanced(other.root()));
+                    assertEquals(new ArrayList<>(theirs), keys(other));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test set operations on trees large enough to be split across the fork/join pool
+     */
+    public void testSetOperationsInParallel() {
+        int n = 4 * AVLTree.PARALLEL_THRESHOLD;
+        int[] evens = new int[n];
+        int[] threes = new int[n];
+        for (int i = 0; i < n; i++) {
+            evens[i] = 2 * i;
+            threes[i] = 3 * i;
+        }
+        AVLTree union = AVLTree.fromSorted(evens);
+        union.union(AVLTree.fromSorted(threes));
+        AVLTree intersection = AVLTree.fromSorted(evens);
+        intersection.intersect(AVLTree.fromSorted(threes));
+        AVLTree difference = AVLTree.fromSorted(evens);
+        difference.difference(AVLTree.fromSorted(threes));
+        int sixes = (2 * n - 1) / 6 + 1; // multiples of 6 below 2n
+        assertEquals(2 * n - sixes, checkBalanced(union.root()));
+        assertEquals(sixes, checkBalanced(intersection.root()));
+        assertEquals(n - sixes, checkBalanced(difference.root()));
+        for (int key = 0; key < 3 * n; key++) {
+            boolean even = key % 2 == 0 && key < 2 * n;
+            boolean three = key % 3 == 0;
+            assertEquals(even || three, union.contains(key));
+            assertEquals(even && three, intersection.contains(key));
+            assertEquals(even && !three, difference.contains(key));
+        }
+    }
+
+    /**
+     * Test set operations of a tree with itself
+     */
+    public void testSetOperationsWithItself() {
+        AVLTree built = AVLTree.fromSorted(new int[]{1, 2, 3});
+        built.union(built);
+        built.intersect(built);
+        assertEquals(List.of(1, 2, 3), keys(built));
+        built.difference(built);
+        assertEquals(0, built.size());
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int size, int range) {
+        TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < Math.min(size, range)) {
+            set.add(random.nextInt(range));
+        }
+        return set;
+    }
+
+    private static AVLTree treeOf(TreeSet<Integer> keys) {
+        AVLTree tree = new AVLTree();
+        for (int key : keys) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    private static List<Integer> keys(AVLTree tree) {
+        List<Integer> keys = new ArrayList<>();
+        tree.forEach(keys::add);
+        return keys;
+    }
+
+    /**
+     * Test order statistics at the edges of the key space and of the tree
+     */
+    public void testOrderStatisticEdges() {
+        AVLTree built = AVLTree.fromSorted(new int[]{Integer.MIN_VALUE, 0, Integer.MAX_VALUE});
+        assertEquals(3, built.countInRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(0, built.countInRange(1, 0));
+        assertEquals(0, built.rank(Integer.MIN_VALUE));
+        assertEquals(2, built.rank(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, built.select(2));
+        try {
+            built.select(3);
+            fail("Should throw IllegalArgumentException for k >= size()");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+        assertEquals(0, tree.size());
+        assertEquals(0, tree.rank(5));
+    }
+
+    /**
+     * Checks ordering, balance, stored heights and subtree sizes and returns the number of nodes.
+     */
+    static int checkBalanced(Node root) {
+        int[] count = {0};
+        checkNode(root, Long.MIN_VALUE, Long.MAX_VALUE, count);
+        return count[0];
+    }
+
+    private static int checkNode(Node node, long low, long high, int[] count) {
+        if (node == null) {
+            return -1;
+        }
+        assertTrue("Key out of order", node.key > low && node.key < high);
+        count[0]++;
+        int leftHeight = checkNode(node.left, low, node.key, count);
+        int rightHeight = checkNode(node.right, node.key, high, count);
+        assertTrue("Balance factor out of range", Math.abs(rightHeight - leftHeight) <= 1);
+        assertEquals("Stored height", 1 + Math.max(leftHeight, rightHeight), node.height);
+        int leftSize = node.left == null ? 0 : node.left.size;
+        int rightSize = node.right == null ? 0 : node.right.size;
+        assertEquals("Stored size", 1 + leftSize + rightSize, node.size);
+        return node.height;
+    }
+}
@@ -0,0 +1,132 @@
+package org.bsdro.forest.avl;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Test class for AggregateAVLTree
+ */
+public class AggregateAVLTreeTest extends TestCase {
+
+    /**
+     * Test range sums over keys that are their own values
+     */
+    public void testSumOfKeys() {
+        AggregateAVLTree tree = new AggregateAVLTree(LongMonoid.SUM);
+        for (int key = 1; key <= 100; key++) {
+            tree.insert(key);
+        }
+        assertEquals(5050, tree.aggregate());
+        assertEquals(55, tree.aggregate(1, 10));
+        assertEquals(0, tree.aggregate(200, 300));
+        assertEquals(0, tree.aggregate(10, 1));
+        tree.delete(5);
+        assertEquals(50, tree.aggregate(1, 10));
+        assertEquals(99, AVLTreeTest.checkBalanced(tree.root()));
+    }
+
+    /**
+     * Test that inserting a present key replaces its value and the summaries above it
+     */
+    public void testInsertReplacesValue() {
+        AggregateAVLTree tree = new AggregateAVLTree(LongMonoid.SUM);
+        for (int key = 1; key <= 100; key++) {
+            assertTrue(tree.insert(key));
+        }
+        assertFalse(tree.insert(50, 1000));
+        assertEquals(1000, tree.get(50));
+        assertEquals(5050 - 50 + 1000, tree.aggregate());
+        assertEquals(1000 + 51, tree.aggregate(50, 51));
+        assertEquals(100, AVLTreeTest.checkBalanced(tree.root()));
+    }
+
+    /**
+     * Test that set operations carry values along and keep the summaries up to date
+     */
+    public void testSetOperationsKeepSummaries() {
+        AggregateAVLTree tree = new AggregateAVLTree(LongMonoid.SUM);
+        AggregateAVLTree other = new AggregateAVLTree(LongMonoid.SUM);
+        for (int key = 0; key < 1000; key++) {
+            tree.insert(2 * key, 1);
+            other.insert(3 * key, 10);
+        }
+        tree.union(other);
+        // Shared multiples of 6 keep the value 1 of this tree
+        assertEquals(1000 + 10 * (1000 - 334), tree.aggregate());
+        assertEquals(10, tree.get(2997));
+        assertEquals(1, tree.get(6));
+        tree.difference(other);
+        assertEquals(1000 - 334, tree.aggregate());
+        assertEquals(1000 - 334, AVLTreeTest.checkBalanced(tree.root()));
+        assertEquals(10000, other.aggregate());
+    }
+
+    /**
+     * Test that set operations reject plain trees and trees with a different monoid and leave both trees unchanged
+     */
+    public void testSetOperationsRejectOtherKinds() {
+        AggregateAVLTree tree = new AggregateAVLTree(LongMonoid.SUM);
+        AggregateAVLTree maxTree = new AggregateAVLTree(LongMonoid.MAX);
+        AVLTree plain = new AVLTree();
+        for (int key = 0; key < 100; key++) {
+            tree.insert(key);
+            maxTree.insert(key + 50);
+            plain.insert(key + 50);
+        }
+        assertRejected(() -> tree.union(plain));
+        assertRejected(() -> tree.intersect(maxTree));
+        assertRejected(() -> plain.difference(tree));
+        assertEquals(4950, tree.aggregate());
+        assertEquals(149, maxTree.aggregate());
+        assertEquals(100, plain.size());
+    }
+
+    private static void assertRejected(Runnable operation) {
+        try {
+            operation.run();
+            fail("Should throw IllegalArgumentException for a different kind of tree");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test sum, min, max and an order-sensitive monoid against a TreeMap while keys come and go
+     */
+    public void testRandomRangesMatchReference() {
+        // Keeps the leftmost value, associative but not commutative, so it checks the combining order
+        LongMonoid first = LongMonoid.of(Long.MIN_VALUE, (left, right) -> left != Long.MIN_VALUE ? left : right);
+        LongMonoid[] monoids = {LongMonoid.SUM, LongMonoid.MIN, LongMonoid.MAX, first};
+        for (LongMonoid monoid : monoids) {
+            Random random = new Random(13);
+            AggregateAVLTree tree = new AggregateAVLTree(monoid);
+            TreeMap<Integer, Long> expected = new TreeMap<>();
+            for (int i = 0; i < 10000; i++) {
+                int key = random.nextInt(2000);
+                if (random.nextInt(3) > 0) {
+                    if (!expected.containsKey(key)) {
+                        long value = random.nextInt(1000000) - 500000;
+                        expected.put(key, value);
+                        tree.insert(key, value);
+                    }
+                } else if (expected.remove(key) != null) {
+                    tree.delete(key);
+                }
+                int lo = random.nextInt(2200) - 100;
+                int hi = lo + random.nextInt(500);
+                long reference = monoid.identity();
+                for (Map.Entry<Integer, Long> entry : expected.subMap(lo, true, hi, true).entrySet()) {
+                    reference = monoid.combine(reference, entry.getValue());
+                }
+                assertEquals(reference, tree.aggregate(lo, hi));
+            }
+            assertEquals(expected.size(), AVLTreeTest.checkBalanced(tree.root()));
+            for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+                assertEquals(entry.getValue().longValue(), tree.get(entry.getKey()));
+            }
+        }
+    }
+}
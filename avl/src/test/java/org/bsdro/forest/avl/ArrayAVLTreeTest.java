@@ -0,0 +1,108 @@
+package org.bsdro.forest.avl;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for the array-backed AVL engine
+ */
+public class ArrayAVLTreeTest extends TestCase {
+
+    private ArrayAVLTree tree;
+
+    @Override
+    protected void setUp() {
+        tree = new ArrayAVLTree(1);
+    }
+
+    /**
+     * Test inserting and finding keys
+     */
+    public void testInsertAndContains() {
+        for (int key : new int[]{30, 10, 20, 40, 50, 5}) {
+            tree.insert(key);
+        }
+        assertEquals(6, tree.size());
+        assertTrue(tree.contains(20));
+        assertTrue(tree.contains(5));
+        assertFalse(tree.contains(25));
+        assertBalanced(tree.root());
+    }
+
+    /**
+     * Test that a duplicate key is rejected like in AVLTree
+     */
+    public void testInsertDuplicateThrows() {
+        tree.insert(10);
+        try {
+            tree.insert(10);
+            fail("Should throw IllegalArgumentException for a duplicate key");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test that deleted slots are reused instead of growing the pool
+     */
+    public void testDeletedSlotsAreReused() {
+        for (int key = 0; key < 100; key++) {
+            tree.insert(key);
+        }
+        for (int key = 0; key < 100; key += 2) {
+            tree.delete(key);
+        }
+        assertEquals(50, tree.size());
+        int maxSlot = maxSlot(tree.root());
+        for (int key = 1000; key < 1050; key++) {
+            tree.insert(key);
+        }
+        assertEquals(100, tree.size());
+        assertTrue("Pool should not grow past its high-water mark", maxSlot(tree.root()) < 100);
+        assertTrue(maxSlot >= 50);
+        assertBalanced(tree.root());
+    }
+
+    /**
+     * Test random inserts and deletes against a reference set
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        TreeSet<Integer> reference = new TreeSet<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                tree.delete(key);
+                reference.remove(key);
+            } else if (!reference.contains(key)) {
+                tree.insert(key);
+                reference.add(key);
+            }
+        }
+        assertEquals(reference.size(), tree.size());
+        for (int key = 0; key < 5000; key++) {
+            assertEquals("contains(" + key + ")", reference.contains(key), tree.contains(key));
+        }
+        assertBalanced(tree.root());
+    }
+
+    private int assertBalanced(int node) {
+        if (node == ArrayAVLTree.NIL) {
+            return -1;
+        }
+        int leftHeight = assertBalanced(tree.left(node));
+        int rightHeight = assertBalanced(tree.right(node));
+        assertTrue("Balance factor out of range", Math.abs(rightHeight - leftHeight) <= 1);
+        assertEquals("Stored height", 1 + Math.max(leftHeight, rightHeight), tree.height(node));
+        return tree.height(node);
+    }
+
+    private int maxSlot(int node) {
+        if (node == ArrayAVLTree.NIL) {
+            return -1;
+        }
+        return Math.max(node, Math.max(maxSlot(tree.left(node)), maxSlot(tree.right(node))));
+    }
+}
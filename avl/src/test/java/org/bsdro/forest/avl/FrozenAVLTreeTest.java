@@ -0,0 +1,74 @@
+package org.bsdro.forest.avl;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Test class for FrozenAVLTree
+ */
+public class FrozenAVLTreeTest extends TestCase {
+
+    /**
+     * Test that an empty tree freezes to an empty copy
+     */
+    public void testFreezeEmpty() {
+        FrozenAVLTree frozen = new AVLTree().freeze();
+        assertEquals(0, frozen.size());
+        assertFalse(frozen.contains(0));
+        assertEquals(0, frozen.containsAll(new int[0]).length);
+    }
+
+    /**
+     * Test lookups on every tree size up to a few full levels, including keys around the extremes
+     */
+    public void testContainsMatchesTree() {
+        for (int n = 1; n <= 70; n++) {
+            AVLTree tree = new AVLTree();
+            for (int i = 0; i < n; i++) {
+                tree.insert(Integer.MAX_VALUE - 2 * i);
+            }
+            FrozenAVLTree frozen = tree.freeze();
+            assertEquals(n, frozen.size());
+            for (int key = Integer.MAX_VALUE - 2 * n - 1; key != Integer.MIN_VALUE; key++) {
+                assertEquals("n=" + n + " key=" + key, tree.contains(key), frozen.contains(key));
+            }
+            assertFalse(frozen.contains(Integer.MIN_VALUE));
+        }
+    }
+
+    /**
+     * Test that the copy is unaffected by later changes to the tree
+     */
+    public void testFreezeIsSnapshot() {
+        AVLTree tree = AVLTree.fromSorted(new int[]{1, 3, 5});
+        FrozenAVLTree frozen = tree.freeze();
+        tree.delete(3);
+        tree.insert(4);
+        assertTrue(frozen.contains(3));
+        assertFalse(frozen.contains(4));
+    }
+
+    /**
+     * Test a batch lookup large enough to run in parallel against single lookups
+     */
+    public void testContainsAllMatchesContains() {
+        Random random = new Random(18);
+        AVLTree tree = new AVLTree();
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(20000);
+            if (!tree.contains(key)) {
+                tree.insert(key);
+            }
+        }
+        FrozenAVLTree frozen = tree.freeze();
+        int[] probes = new int[3 * AVLTree.PARALLEL_THRESHOLD + 5];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextInt(20002) - 1;
+        }
+        boolean[] found = frozen.containsAll(probes);
+        for (int i = 0; i < probes.length; i++) {
+            assertEquals("probe " + probes[i], tree.contains(probes[i]), found[i]);
+        }
+    }
+}
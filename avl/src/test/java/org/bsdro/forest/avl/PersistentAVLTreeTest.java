@@ -0,0 +1,145 @@
+package org.bsdro.forest.avl;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bsdro.forest.avl.PersistentAVLTree.PersistentNode;
+
+/**
+ * Test class for the path-copying AVL tree
+ */
+public class PersistentAVLTreeTest extends TestCase {
+
+    private PersistentAVLTree tree;
+
+    @Override
+    protected void setUp() {
+        tree = new PersistentAVLTree();
+    }
+
+    /**
+     * Test that duplicates and missing keys report false instead of throwing
+     */
+    public void testInsertAndDeleteResults() {
+        assertTrue(tree.insert(10));
+        assertFalse(tree.insert(10));
+        assertTrue(tree.delete(10));
+        assertFalse(tree.delete(10));
+        assertEquals(0, tree.size());
+    }
+
+    /**
+     * Test that a snapshot keeps its view while the tree changes
+     */
+    public void testSnapshotIsIsolated() {
+        for (int key = 0; key < 100; key++) {
+            tree.insert(key);
+        }
+        PersistentAVLTree.Snapshot before = tree.snapshot();
+        for (int key = 0; key < 100; key += 2) {
+            tree.delete(key);
+        }
+        tree.insert(1000);
+        assertEquals(100, before.size());
+        assertTrue(before.contains(0));
+        assertFalse(before.contains(1000));
+        assertEquals(51, tree.size());
+        assertFalse(tree.contains(0));
+        assertEquals(keys(before).subList(0, 3), Arrays.asList(0, 1, 2));
+        assertEquals(keys(tree.snapshot()).subList(0, 3), Arrays.asList(1, 3, 5));
+    }
+
+    /**
+     * Test random updates against a reference set, checking balance along the way
+     */
+    public void testRandomOperationsMatchReferenceSet() {
+        TreeSet<Integer> reference = new TreeSet<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(3000);
+            if (random.nextBoolean()) {
+                assertEquals(reference.remove(key), tree.delete(key));
+            } else {
+                assertEquals(reference.add(key), tree.insert(key));
+            }
+        }
+        assertEquals(new ArrayList<>(reference), keys(tree.snapshot()));
+        assertEquals(reference.size(), checkBalanced(tree.snapshot().root()));
+    }
+
+    /**
+     * Test that readers iterating snapshots during concurrent updates always see a sorted, complete version
+     */
+    public void testSnapshotsDuringConcurrentWrites() throws InterruptedException {
+        for (int key = 0; key < 1000; key += 2) {
+            tree.insert(key); // even keys are never touched by the writers
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            final int id = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(id);
+                for (int i = 0; i < 20000; i++) {
+                    int key = 2 * random.nextInt(500) + 1;
+                    if (random.nextBoolean()) {
+                        tree.insert(key);
+                    } else {
+                        tree.delete(key);
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            try {
+                for (int i = 0; i < 200; i++) {
+                    PersistentAVLTree.Snapshot snapshot = tree.snapshot();
+                    List<Integer> keys = keys(snapshot);
+                    assertEquals(snapshot.size(), keys.size());
+                    int evens = 0;
+                    for (int j = 0; j < keys.size(); j++) {
+                        assertTrue("Snapshot not sorted", j == 0 || keys.get(j - 1) < keys.get(j));
+                        if (keys.get(j) % 2 == 0) {
+                            evens++;
+                        }
+                    }
+                    assertEquals(500, evens);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull("Reader failed: " + failure.get(), failure.get());
+        assertEquals(tree.size(), checkBalanced(tree.snapshot().root()));
+    }
+
+    static List<Integer> keys(PersistentAVLTree.Snapshot snapshot) {
+        List<Integer> keys = new ArrayList<>();
+        snapshot.iterator().forEachRemaining((int key) -> keys.add(key));
+        return keys;
+    }
+
+    private static int checkBalanced(PersistentNode node) {
+        if (node == null) {
+            return 0;
+        }
+        int left = checkBalanced(node.left);
+        int right = checkBalanced(node.right);
+        assertTrue("Balance factor out of range",
+                Math.abs(PersistentAVLTree.height(node.right) - PersistentAVLTree.height(node.left)) <= 1);
+        assertEquals("Stored size", left + right + 1, node.size);
+        return node.size;
+    }
+}
@@ -0,0 +1,71 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.ab.ABPlusTree;
+import org.bsdro.forest.ab.ABTreeCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups and range scans of {@code rangeSize} consecutive keys on an {@link ABPlusTree}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ABPlusTreeBenchmark {
+
+    @Param({"8-32", "32-128"})
+    String ab;
+
+    @Param({"1000000", "10000000"})
+    int keyCount;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    @Param({"100", "10000"})
+    int rangeSize;
+
+    private ABPlusTree tree;
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void load() {
+        String[] bounds = ab.split("-");
+        tree = new ABPlusTree(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]));
+        workload = new Workload(keyCount, distribution, 42);
+        for (int index : workload.loadOrder(distribution, 7)) {
+            tree.insert(Workload.presentKey(index));
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return tree.contains(workload.nextProbe());
+    }
+
+    @Benchmark
+    public long scan() {
+        int from = workload.nextProbe();
+        ABTreeCursor cursor = tree.scan(from, from + 2 * (rangeSize - 1));
+        long sum = 0;
+        while (cursor.hasNext()) {
+            sum += cursor.nextInt();
+        }
+        return sum;
+    }
+}
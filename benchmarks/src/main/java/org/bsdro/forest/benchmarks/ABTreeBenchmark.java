@@ -0,0 +1,138 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.ab.ABTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation cost of {@link ABTree#insert}, {@link ABTree#contains} and {@link ABTree#remove} on a tree
+ * holding {@code keyCount} keys, and of the same batches passed sorted to {@link ABTree#insertAll} and
+ * {@link ABTree#removeAll}. Updates run in batches of {@link Workload#BATCH} distinct keys that are
+ * undone outside the measurement, so the tree size stays constant across invocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ABTreeBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"2-4", "8-32", "32-128"})
+        String ab;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000", "100000000"})
+        int keyCount;
+
+        @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+        KeyDistribution distribution;
+
+        ABTree tree;
+        Workload workload;
+
+        @Setup(Level.Trial)
+        public void load() {
+            String[] bounds = ab.split("-");
+            tree = new ABTree(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]));
+            workload = new Workload(keyCount, distribution, 42);
+            for (int index : workload.loadOrder(distribution, 7)) {
+                tree.insert(Workload.presentKey(index));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InsertBatch {
+        int[] keys;
+        int[] sortedKeys;
+
+        @Setup(Level.Invocation)
+        public void next(TreeState state) {
+            keys = state.workload.nextBatch(true);
+            sortedKeys = keys.clone();
+            Arrays.sort(sortedKeys);
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(TreeState state) {
+            for (int key : keys) {
+                state.tree.remove(key);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RemoveBatch {
+        int[] keys;
+        int[] sortedKeys;
+
+        @Setup(Level.Invocation)
+        public void next(TreeState state) {
+            keys = state.workload.nextBatch(false);
+            sortedKeys = keys.clone();
+            Arrays.sort(sortedKeys);
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(TreeState state) {
+            for (int key : keys) {
+                state.tree.insert(key);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean contains(TreeState state) {
+        return state.tree.contains(state.workload.nextProbe());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public void insert(TreeState state, InsertBatch batch) {
+        ABTree tree = state.tree;
+        for (int key : batch.keys) {
+            tree.insert(key);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public int remove(TreeState state, RemoveBatch batch) {
+        ABTree tree = state.tree;
+        int removed = 0;
+        for (int key : batch.keys) {
+            if (tree.remove(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public int insertAll(TreeState state, InsertBatch batch) {
+        return state.tree.insertAll(batch.sortedKeys);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public int removeAll(TreeState state, RemoveBatch batch) {
+        return state.tree.removeAll(batch.sortedKeys);
+    }
+}
@@ -0,0 +1,87 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.avl.AVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Join-based {@link AVLTree#union} and {@link AVLTree#difference} against iterating the other tree and calling
+ * insert or delete for each of its keys. Half of the other tree's keys are also in the target tree.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AVLSetOperationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Trees {
+        @Param({"1000000", "10000000"})
+        int keyCount;
+
+        @Param({"0.01", "1"})
+        double otherRatio;
+
+        int[] keys;
+        AVLTree other;
+        AVLTree target;
+
+        @Setup(Level.Trial)
+        public void load() {
+            Random random = new Random(42);
+            keys = random.ints(2L * keyCount, 0, Integer.MAX_VALUE).distinct().limit(keyCount).sorted().toArray();
+            int otherCount = (int) (otherRatio * keyCount);
+            int[] otherKeys = new int[otherCount];
+            for (int i = 0; i < otherCount; i++) {
+                otherKeys[i] = i % 2 == 0 ? keys[(int) ((long) i * keyCount / otherCount)] : 2 * i + 1;
+            }
+            other = AVLTree.fromSorted(Arrays.stream(otherKeys).sorted().distinct().toArray());
+        }
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            target = AVLTree.fromSorted(keys);
+        }
+    }
+
+    @Benchmark
+    public AVLTree union(Trees trees) {
+        trees.target.union(trees.other);
+        return trees.target;
+    }
+
+    @Benchmark
+    public AVLTree insertLoop(Trees trees) {
+        AVLTree target = trees.target;
+        trees.other.forEach(target::insert);
+        return target;
+    }
+
+    @Benchmark
+    public AVLTree difference(Trees trees) {
+        trees.target.difference(trees.other);
+        return trees.target;
+    }
+
+    @Benchmark
+    public AVLTree deleteLoop(Trees trees) {
+        AVLTree target = trees.target;
+        trees.other.forEach(target::delete);
+        return target;
+    }
+}
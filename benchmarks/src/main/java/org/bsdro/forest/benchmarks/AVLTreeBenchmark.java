@@ -0,0 +1,147 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.avl.AVLTree;
+import org.bsdro.forest.avl.ArrayAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation cost of AVL insert, find and delete for the node-based {@link AVLTree} and the
+ * array-backed {@link ArrayAVLTree}, measured the same way as {@link ABTreeBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AVLTreeBenchmark {
+
+    /**
+     * The two engines share no interface, each fork only ever loads one implementation of this one.
+     */
+    interface Engine {
+        void insert(int key);
+
+        void delete(int key);
+
+        boolean contains(int key);
+    }
+
+    static Engine engine(String name) {
+        switch (name) {
+            case "node": {
+                AVLTree tree = new AVLTree();
+                return new Engine() {
+                    public void insert(int key) { tree.insert(key); }
+                    public void delete(int key) { tree.delete(key); }
+                    public boolean contains(int key) { return tree.contains(key); }
+                };
+            }
+            case "array": {
+                ArrayAVLTree tree = new ArrayAVLTree();
+                return new Engine() {
+                    public void insert(int key) { tree.insert(key); }
+                    public void delete(int key) { tree.delete(key); }
+                    public boolean contains(int key) { return tree.contains(key); }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown engine " + name);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"node", "array"})
+        String engine;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000", "100000000"})
+        int keyCount;
+
+        @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+        KeyDistribution distribution;
+
+        Engine tree;
+        Workload workload;
+
+        @Setup(Level.Trial)
+        public void load() {
+            tree = engine(engine);
+            workload = new Workload(keyCount, distribution, 42);
+            for (int index : workload.loadOrder(distribution, 7)) {
+                tree.insert(Workload.presentKey(index));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InsertBatch {
+        int[] keys;
+
+        @Setup(Level.Invocation)
+        public void next(TreeState state) {
+            keys = state.workload.nextBatch(true);
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(TreeState state) {
+            for (int key : keys) {
+                state.tree.delete(key);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeleteBatch {
+        int[] keys;
+
+        @Setup(Level.Invocation)
+        public void next(TreeState state) {
+            keys = state.workload.nextBatch(false);
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(TreeState state) {
+            for (int key : keys) {
+                state.tree.insert(key);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean find(TreeState state) {
+        return state.tree.contains(state.workload.nextProbe());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public void insert(TreeState state, InsertBatch batch) {
+        Engine tree = state.tree;
+        for (int key : batch.keys) {
+            tree.insert(key);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public void delete(TreeState state, DeleteBatch batch) {
+        Engine tree = state.tree;
+        for (int key : batch.keys) {
+            tree.delete(key);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.ab.ABTree;
+import org.bsdro.forest.ab.BufferedABTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts and lookups in a {@link BufferedABTree} with buffers of {@code bufferFactor} times b messages,
+ * against an {@link ABTree} with the same bounds and keys. Inserted batches are removed again outside the
+ * measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferedABTreeBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"8-32", "32-128"})
+        String ab;
+
+        @Param({"1000000", "10000000"})
+        int keyCount;
+
+        @Param({"RANDOM", "ZIPFIAN"})
+        KeyDistribution distribution;
+
+        @Param({"4", "16", "64"})
+        int bufferFactor;
+
+        ABTree tree;
+        BufferedABTree buffered;
+        Workload workload;
+
+        @Setup(Level.Trial)
+        public void load() {
+            String[] bounds = ab.split("-");
+            int a = Integer.parseInt(bounds[0]);
+            int b = Integer.parseInt(bounds[1]);
+            tree = new ABTree(a, b);
+            buffered = new BufferedABTree(a, b, bufferFactor * b);
+            workload = new Workload(keyCount, distribution, 42);
+            for (int index : workload.loadOrder(distribution, 7)) {
+                tree.insert(Workload.presentKey(index));
+                buffered.insert(Workload.presentKey(index));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InsertBatch {
+        int[] keys;
+
+        @Setup(Level.Invocation)
+        public void next(TreeState state) {
+            keys = state.workload.nextBatch(true);
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(TreeState state) {
+            for (int key : keys) {
+                state.tree.remove(key);
+                state.buffered.remove(key);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public void insert(TreeState state, InsertBatch batch) {
+        ABTree tree = state.tree;
+        for (int key : batch.keys) {
+            tree.insert(key);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public void bufferedInsert(TreeState state, InsertBatch batch) {
+        BufferedABTree buffered = state.buffered;
+        for (int key : batch.keys) {
+            buffered.insert(key);
+        }
+    }
+
+    @Benchmark
+    public boolean contains(TreeState state) {
+        return state.tree.contains(state.workload.nextProbe());
+    }
+
+    @Benchmark
+    public boolean bufferedContains(TreeState state) {
+        return state.buffered.contains(state.workload.nextProbe());
+    }
+}
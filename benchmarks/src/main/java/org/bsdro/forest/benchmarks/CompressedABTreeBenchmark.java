@@ -0,0 +1,141 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.ab.ABTree;
+import org.bsdro.forest.ab.CompressedABTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompressedABTree} against {@link ABTree} with the same bounds and keys. The workload keys are
+ * multiplied by {@code spacing}, so 1 gives dense IDs and larger values spread them out. The bulk load
+ * benchmarks allocate nothing but the finished tree, so their {@code gc.alloc.rate.norm} is the footprint
+ * in bytes per key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressedABTreeBenchmark {
+    static final int KEY_COUNT = 1 << 20;
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"8-32", "32-128"})
+        String ab;
+
+        @Param({"RANDOM", "ZIPFIAN"})
+        KeyDistribution distribution;
+
+        @Param({"1", "128"})
+        int spacing;
+
+        int a;
+        int b;
+        int[] sortedKeys;
+        ABTree tree;
+        CompressedABTree compressed;
+        Workload workload;
+
+        @Setup(Level.Trial)
+        public void load() {
+            String[] bounds = ab.split("-");
+            a = Integer.parseInt(bounds[0]);
+            b = Integer.parseInt(bounds[1]);
+            tree = new ABTree(a, b);
+            compressed = new CompressedABTree(a, b);
+            workload = new Workload(KEY_COUNT, distribution, 42);
+            for (int index : workload.loadOrder(distribution, 7)) {
+                tree.insert(key(Workload.presentKey(index)));
+                compressed.insert(key(Workload.presentKey(index)));
+            }
+            sortedKeys = new int[KEY_COUNT];
+            for (int i = 0; i < KEY_COUNT; i++) {
+                sortedKeys[i] = key(Workload.presentKey(i));
+            }
+        }
+
+        int key(int workloadKey) {
+            return workloadKey * spacing;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InsertBatch {
+        int[] keys;
+
+        @Setup(Level.Invocation)
+        public void next(TreeState state) {
+            keys = state.workload.nextBatch(true);
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = state.key(keys[i]);
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(TreeState state) {
+            for (int key : keys) {
+                state.tree.remove(key);
+                state.compressed.remove(key);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_COUNT)
+    public ABTree bulkLoad(TreeState state) {
+        ABTree tree = new ABTree(state.a, state.b);
+        tree.bulkLoad(state.sortedKeys);
+        return tree;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_COUNT)
+    public CompressedABTree compressedBulkLoad(TreeState state) {
+        CompressedABTree compressed = new CompressedABTree(state.a, state.b);
+        compressed.bulkLoad(state.sortedKeys);
+        return compressed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public void insert(TreeState state, InsertBatch batch) {
+        ABTree tree = state.tree;
+        for (int key : batch.keys) {
+            tree.insert(key);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workload.BATCH)
+    public void compressedInsert(TreeState state, InsertBatch batch) {
+        CompressedABTree compressed = state.compressed;
+        for (int key : batch.keys) {
+            compressed.insert(key);
+        }
+    }
+
+    @Benchmark
+    public boolean contains(TreeState state) {
+        return state.tree.contains(state.key(state.workload.nextProbe()));
+    }
+
+    @Benchmark
+    public boolean compressedContains(TreeState state) {
+        return state.compressed.contains(state.key(state.workload.nextProbe()));
+    }
+}
@@ -0,0 +1,94 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.ab.ABPlusTree;
+import org.bsdro.forest.ab.ConcurrentABTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a shared tree under a read/write mix, comparing {@link ConcurrentABTree} against an
+ * {@link ABPlusTree} behind one global lock. Run with the JMH thread option to get the scaling curve,
+ * e.g. {@code -t 1}, {@code -t 8}, {@code -t 64}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentABTreeBenchmark {
+
+    interface SharedSet {
+        void insert(int key);
+
+        boolean remove(int key);
+
+        boolean contains(int key);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"olc", "locked"})
+        String impl;
+
+        @Param({"1000000"})
+        int keyCount;
+
+        @Param({"100", "90", "50"})
+        int readPercent;
+
+        SharedSet tree;
+
+        @Setup(Level.Trial)
+        public void load() {
+            if (impl.equals("olc")) {
+                ConcurrentABTree concurrent = new ConcurrentABTree(8, 32);
+                tree = new SharedSet() {
+                    public void insert(int key) { concurrent.insert(key); }
+                    public boolean remove(int key) { return concurrent.remove(key); }
+                    public boolean contains(int key) { return concurrent.contains(key); }
+                };
+            } else {
+                ABPlusTree plain = new ABPlusTree(8, 32);
+                tree = new SharedSet() {
+                    public synchronized void insert(int key) { plain.insert(key); }
+                    public synchronized boolean remove(int key) { return plain.remove(key); }
+                    public synchronized boolean contains(int key) { return plain.contains(key); }
+                };
+            }
+            Workload workload = new Workload(keyCount, KeyDistribution.RANDOM, 42);
+            for (int index : workload.loadOrder(KeyDistribution.RANDOM, 7)) {
+                tree.insert(Workload.presentKey(index));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean mixed(Shared shared) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(shared.keyCount);
+        int operation = random.nextInt(100);
+        if (operation < shared.readPercent) {
+            return shared.tree.contains(Workload.presentKey(index));
+        }
+        // Writes churn the odd keys so the tree size stays around keyCount
+        int key = Workload.freshKey(index);
+        if ((operation & 1) == 0) {
+            shared.tree.insert(key);
+            return true;
+        }
+        return shared.tree.remove(key);
+    }
+}
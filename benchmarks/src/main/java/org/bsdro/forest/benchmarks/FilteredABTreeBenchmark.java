@@ -0,0 +1,69 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.ab.ABTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of absent and present keys in an {@link ABTree} with and without its cuckoo filter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilteredABTreeBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"8-32", "32-128"})
+        String ab;
+
+        @Param({"1000000", "10000000"})
+        int keyCount;
+
+        @Param({"RANDOM", "ZIPFIAN"})
+        KeyDistribution distribution;
+
+        @Param({"false", "true"})
+        boolean filtered;
+
+        ABTree tree;
+        Workload workload;
+
+        @Setup(Level.Trial)
+        public void load() {
+            String[] bounds = ab.split("-");
+            tree = new ABTree(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]));
+            workload = new Workload(keyCount, distribution, 42);
+            for (int index : workload.loadOrder(distribution, 7)) {
+                tree.insert(Workload.presentKey(index));
+            }
+            if (filtered) {
+                tree.enableFilter();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean containsMiss(TreeState state) {
+        return state.tree.contains(state.workload.nextMiss());
+    }
+
+    @Benchmark
+    public boolean containsHit(TreeState state) {
+        return state.tree.contains(state.workload.nextProbe());
+    }
+}
@@ -0,0 +1,76 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.avl.AVLTree;
+import org.bsdro.forest.avl.FrozenAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in an {@link AVLTree} against the same keys after {@link AVLTree#freeze()}, one at a time and
+ * as a batch through {@link FrozenAVLTree#containsAll}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrozenAVLTreeBenchmark {
+    static final int PROBES = 1 << 16;
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"1000", "100000", "10000000"})
+        int keyCount;
+
+        @Param({"RANDOM", "ZIPFIAN"})
+        KeyDistribution distribution;
+
+        AVLTree tree;
+        FrozenAVLTree frozen;
+        Workload workload;
+        int[] probes;
+
+        @Setup(Level.Trial)
+        public void load() {
+            tree = new AVLTree();
+            workload = new Workload(keyCount, distribution, 42);
+            for (int index : workload.loadOrder(distribution, 7)) {
+                tree.insert(Workload.presentKey(index));
+            }
+            frozen = tree.freeze();
+            probes = new int[PROBES];
+            for (int i = 0; i < PROBES; i++) {
+                probes[i] = workload.nextProbe();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean tree(TreeState state) {
+        return state.tree.contains(state.workload.nextProbe());
+    }
+
+    @Benchmark
+    public boolean frozen(TreeState state) {
+        return state.frozen.contains(state.workload.nextProbe());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public boolean[] frozenBatch(TreeState state) {
+        return state.frozen.containsAll(state.probes);
+    }
+}
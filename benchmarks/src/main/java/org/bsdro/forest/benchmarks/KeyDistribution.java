@@ -0,0 +1,70 @@
+package org.bsdro.forest.benchmarks;
+
+import java.util.Random;
+
+/**
+ * How benchmark keys are chosen. A workload of {@code n} keys uses the indices {@code [0, n)}, the tree is
+ * loaded with the even keys {@code 2 * index} and fresh keys for inserts are the odd keys {@code 2 * index + 1}.
+ */
+public enum KeyDistribution {
+    SEQUENTIAL {
+        @Override
+        int[] loadOrder(int n, Random random) {
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+
+        @Override
+        int[] draws(int n, int count, Random random) {
+            int[] draws = new int[count];
+            int start = random.nextInt(n);
+            for (int i = 0; i < count; i++) {
+                draws[i] = (start + i) % n;
+            }
+            return draws;
+        }
+    },
+    RANDOM {
+        @Override
+        int[] draws(int n, int count, Random random) {
+            int[] draws = new int[count];
+            for (int i = 0; i < count; i++) {
+                draws[i] = random.nextInt(n);
+            }
+            return draws;
+        }
+    },
+    ZIPFIAN {
+        @Override
+        int[] draws(int n, int count, Random random) {
+            ZipfianGenerator generator = new ZipfianGenerator(n);
+            int[] draws = new int[count];
+            for (int i = 0; i < count; i++) {
+                draws[i] = generator.next(random);
+            }
+            return draws;
+        }
+    };
+
+    /**
+     * Order in which the indices are inserted when the tree is loaded, a shuffle unless overridden.
+     */
+    int[] loadOrder(int n, Random random) {
+        int[] order = SEQUENTIAL.loadOrder(n, random);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * {@code count} indices in {@code [0, n)} drawn from this distribution, repeats allowed.
+     */
+    abstract int[] draws(int n, int count, Random random);
+}
@@ -0,0 +1,68 @@
+package org.bsdro.forest.benchmarks;
+
+import org.bsdro.forest.ab.ABTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ABTree#contains} on fully packed trees of growing node width, once with binary search in every node
+ * and once with the Vector API kernel in every node. The crossover sets the default of
+ * {@code org.bsdro.forest.ab.vectorSearchMinKeys}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NodeSearchBenchmark {
+
+    @State(Scope.Thread)
+    public static class TreeState {
+        @Param({"8", "16", "32", "64", "128", "256", "512"})
+        int b;
+
+        @Param({"1000000"})
+        int keyCount;
+
+        @Param({"RANDOM"})
+        KeyDistribution distribution;
+
+        ABTree tree;
+        Workload workload;
+
+        @Setup(Level.Trial)
+        public void load() {
+            tree = new ABTree(b / 2, b);
+            workload = new Workload(keyCount, distribution, 42);
+            int[] keys = new int[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = Workload.presentKey(i);
+            }
+            tree.bulkLoad(keys, 1.0);
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dorg.bsdro.forest.ab.vectorSearchMinKeys=2147483647")
+    public boolean binary(TreeState state) {
+        return state.tree.contains(state.workload.nextProbe());
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector",
+            "-Dorg.bsdro.forest.ab.vectorSearchMinKeys=0"})
+    public boolean vector(TreeState state) {
+        return state.tree.contains(state.workload.nextProbe());
+    }
+}
@@ -0,0 +1,68 @@
+package org.bsdro.forest.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Key material shared by the tree benchmarks: the load order and a ring of drawn indices that lookups
+ * and update batches walk through.
+ */
+final class Workload {
+    static final int BATCH = 256;
+    private static final int DRAWS = 1 << 20;
+
+    private final int keyCount;
+    private final int[] draws;
+    private int cursor;
+
+    Workload(int keyCount, KeyDistribution distribution, long seed) {
+        this.keyCount = keyCount;
+        this.draws = distribution.draws(keyCount, DRAWS, new Random(seed));
+    }
+
+    static int presentKey(int index) {
+        return 2 * index;
+    }
+
+    static int freshKey(int index) {
+        return 2 * index + 1;
+    }
+
+    int[] loadOrder(KeyDistribution distribution, long seed) {
+        return distribution.loadOrder(keyCount, new Random(seed));
+    }
+
+    int nextProbe() {
+        return presentKey(draws[cursor++ & (DRAWS - 1)]);
+    }
+
+    int nextMiss() {
+        return freshKey(draws[cursor++ & (DRAWS - 1)]);
+    }
+
+    /**
+     * The next {@link #BATCH} distinct keys, present ones for removals and fresh ones for inserts.
+     */
+    int[] nextBatch(boolean fresh) {
+        int[] batch = new int[BATCH];
+        int[] seen = new int[BATCH];
+        int size = 0;
+        while (size < BATCH) {
+            int index = draws[cursor++ & (DRAWS - 1)];
+            if (contains(seen, size, index)) {
+                continue;
+            }
+            seen[size] = index;
+            batch[size++] = fresh ? freshKey(index) : presentKey(index);
+        }
+        return batch;
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
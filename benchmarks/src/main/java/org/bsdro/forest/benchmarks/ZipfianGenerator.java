@@ -0,0 +1,58 @@
+package org.bsdro.forest.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Zipfian index generator after Gray et al., "Quickly Generating Billion-Record Synthetic Databases",
+ * the same construction YCSB uses. Ranks are scrambled so the hot indices are spread over the key space
+ * instead of clustering at the low end.
+ */
+final class ZipfianGenerator {
+    static final double THETA = 0.99;
+
+    private final int items;
+    private final double alpha;
+    private final double zetan;
+    private final double eta;
+    private final double secondThreshold;
+
+    ZipfianGenerator(int items) {
+        this.items = items;
+        this.zetan = zeta(items);
+        this.alpha = 1.0 / (1.0 - THETA);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - THETA)) / (1 - zeta(2) / zetan);
+        this.secondThreshold = 1 + Math.pow(0.5, THETA);
+    }
+
+    int next(Random random) {
+        return scramble(nextRank(random));
+    }
+
+    private int nextRank(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetan;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < secondThreshold) {
+            return 1;
+        }
+        return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private int scramble(int rank) {
+        long h = rank * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= h >>> 32;
+        return (int) Long.remainderUnsigned(h, items);
+    }
+
+    private static double zeta(int n) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, THETA);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,217 @@
+package org.bsdro.forest.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+import static org.bsdro.forest.snapshot.TreeSnapshot.HEADER_SIZE;
+import static org.bsdro.forest.snapshot.TreeSnapshot.INDEX_ENTRY_SIZE;
+import static org.bsdro.forest.snapshot.TreeSnapshot.MAGIC;
+import static org.bsdro.forest.snapshot.TreeSnapshot.VERSION;
+
+/**
+ * Read-only key set backed by a mapped {@link TreeSnapshot} file. A lookup binary searches the block index and
+ * decodes at most one block of varint gaps, so nothing but the touched pages is ever read into memory. Opening
+ * only checks the header and the file length, {@link #verify()} checks the body as well at the cost of reading
+ * all of it.
+ */
+public final class SnapshotView {
+    static final int PARALLEL_BLOCKS = 256; // blocks decoded by one task of toArray()
+
+    private final ByteBuffer buffer;
+    private final Path file;
+    private final int size;
+    private final int blockKeys;
+    private final int blockCount;
+    private final int indexStart;
+
+    SnapshotView(ByteBuffer buffer, Path file) {
+        this.buffer = buffer;
+        this.file = file;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a snapshot file: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Unsupported snapshot version " + buffer.getInt(4) + ": " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, HEADER_SIZE - 4));
+        if (buffer.getInt(HEADER_SIZE - 4) != (int) crc.getValue()) {
+            throw new IllegalStateException("Corrupt snapshot header: " + file);
+        }
+        this.size = buffer.getInt(8);
+        this.blockKeys = buffer.getInt(12);
+        int dataLength = buffer.getInt(16);
+        this.blockCount = size == 0 ? 0 : (size - 1) / blockKeys + 1;
+        this.indexStart = HEADER_SIZE + dataLength;
+        if ((long) indexStart + (long) blockCount * INDEX_ENTRY_SIZE != buffer.capacity()) {
+            throw new IllegalStateException("Truncated snapshot: " + file);
+        }
+    }
+
+    /**
+     * Checks the body checksum, which reads every page of the file, and returns this view.
+     *
+     * @throws IllegalStateException if the blocks or the index are damaged
+     */
+    public SnapshotView verify() {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+        if (buffer.getInt(20) != (int) crc.getValue()) {
+            throw new IllegalStateException("Corrupt snapshot: " + file);
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int key) {
+        // Last block whose first key is at most the key
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstKey(mid) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return false;
+        }
+        int current = firstKey(high);
+        int position = blockStart(high);
+        for (int i = 1; i < keysInBlock(high) && current < key; i++) {
+            current += gapAt(position);
+            position = nextGap(position);
+        }
+        return current == key;
+    }
+
+    /**
+     * The keys in ascending order, decoded as the iterator advances.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next;
+            private int position;
+            private int current;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == size) {
+                    throw new NoSuchElementException();
+                }
+                if (next % blockKeys == 0) {
+                    current = firstKey(next / blockKeys);
+                    position = blockStart(next / blockKeys);
+                } else {
+                    current += gapAt(position);
+                    position = nextGap(position);
+                }
+                next++;
+                return current;
+            }
+        };
+    }
+
+    /**
+     * All keys in ascending order. Blocks decode independently, so large snapshots are split across the common
+     * fork/join pool.
+     */
+    public int[] toArray() {
+        int[] keys = new int[size];
+        DecodeTask task = new DecodeTask(keys, 0, blockCount);
+        if (blockCount > PARALLEL_BLOCKS) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return keys;
+    }
+
+    private final class DecodeTask extends RecursiveAction {
+        private final int[] keys;
+        private final int from;
+        private final int to;
+
+        DecodeTask(int[] keys, int from, int to) {
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_BLOCKS) {
+                for (int block = from; block < to; block++) {
+                    decode(block, keys);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DecodeTask(keys, from, mid), new DecodeTask(keys, mid, to));
+        }
+    }
+
+    private void decode(int block, int[] keys) {
+        int k = block * blockKeys;
+        int end = k + keysInBlock(block);
+        int current = firstKey(block);
+        int position = blockStart(block);
+        keys[k++] = current;
+        // Loads spend their time here, so the varints are read in one pass rather than through gapAt
+        while (k < end) {
+            byte b = buffer.get(position++);
+            int gap = b & 0x7F;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = buffer.get(position++);
+                gap |= (b & 0x7F) << shift;
+            }
+            current += gap;
+            keys[k++] = current;
+        }
+    }
+
+    // Reads the varint at the position, the unsigned gap to the previous key
+    private int gapAt(int position) {
+        int gap = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(position++);
+            gap |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return gap;
+            }
+        }
+    }
+
+    private int nextGap(int position) {
+        while (buffer.get(position++) < 0) {
+        }
+        return position;
+    }
+
+    private int firstKey(int block) {
+        return buffer.getInt(indexStart + block * INDEX_ENTRY_SIZE);
+    }
+
+    private int blockStart(int block) {
+        return HEADER_SIZE + buffer.getInt(indexStart + block * INDEX_ENTRY_SIZE + 4);
+    }
+
+    private int keysInBlock(int block) {
+        return Math.min(blockKeys, size - block * blockKeys);
+    }
+}
@@ -0,0 +1,154 @@
+package org.bsdro.forest.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+import static org.bsdro.forest.snapshot.TreeSnapshot.BLOCK_KEYS;
+import static org.bsdro.forest.snapshot.TreeSnapshot.HEADER_SIZE;
+import static org.bsdro.forest.snapshot.TreeSnapshot.INDEX_ENTRY_SIZE;
+import static org.bsdro.forest.snapshot.TreeSnapshot.MAGIC;
+import static org.bsdro.forest.snapshot.TreeSnapshot.VERSION;
+
+/**
+ * Streams ascending keys into a temporary file next to the target through a {@link FileChannel}. The block index
+ * and then the header are written by {@link #commit()}, which forces the file, renames it over the target and
+ * forces the directory, so readers only ever see a complete snapshot. Closing without a commit deletes the
+ * temporary file.
+ */
+final class SnapshotWriter implements IntConsumer, Closeable {
+    private final Path file;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private int[] firstKeys = new int[16];
+    private int[] offsets = new int[16];
+    private long written; // bytes drained after the header
+    private int count;
+    private int last;
+    private boolean committed;
+
+    SnapshotWriter(Path file) {
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void accept(int key) {
+        if (count > 0 && key <= last) throw new IllegalArgumentException("Keys must be ascending and distinct");
+        if (count % BLOCK_KEYS == 0) {
+            int block = count / BLOCK_KEYS;
+            if (block == firstKeys.length) {
+                firstKeys = Arrays.copyOf(firstKeys, 2 * block);
+                offsets = Arrays.copyOf(offsets, 2 * block);
+            }
+            long offset = written + buffer.position();
+            if (offset > Integer.MAX_VALUE - HEADER_SIZE) {
+                throw new IllegalStateException("Snapshot would not fit in 2 GB");
+            }
+            firstKeys[block] = key;
+            offsets[block] = (int) offset;
+        } else {
+            // The gap between distinct ascending keys is positive, read as unsigned it fits any int range
+            if (buffer.remaining() < 5) {
+                drain();
+            }
+            int gap = key - last;
+            while ((gap & ~0x7F) != 0) {
+                buffer.put((byte) ((gap & 0x7F) | 0x80));
+                gap >>>= 7;
+            }
+            buffer.put((byte) gap);
+        }
+        count++;
+        last = key;
+    }
+
+    void commit() {
+        drain();
+        long dataLength = written;
+        int blockCount = (count + BLOCK_KEYS - 1) / BLOCK_KEYS;
+        if (HEADER_SIZE + dataLength + (long) blockCount * INDEX_ENTRY_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot would not fit in 2 GB");
+        }
+        for (int block = 0; block < blockCount; block++) {
+            if (buffer.remaining() < INDEX_ENTRY_SIZE) {
+                drain();
+            }
+            buffer.putInt(firstKeys[block]).putInt(offsets[block]);
+        }
+        drain();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(BLOCK_KEYS).putInt((int) dataLength);
+        header.putInt((int) crc.getValue());
+        CRC32 headerCrc = new CRC32();
+        headerCrc.update(header.array(), 0, HEADER_SIZE - 4);
+        header.putInt((int) headerCrc.getValue()).flip();
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        committed = true;
+        forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    // Makes the rename durable
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms cannot open or force directories, the file contents are forced already
+        }
+    }
+
+    // Writes out the buffer, everything passing through here is covered by the body checksum
+    private void drain() {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        written += buffer.remaining();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
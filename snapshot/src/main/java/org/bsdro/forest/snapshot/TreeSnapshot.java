@@ -0,0 +1,86 @@
+package org.bsdro.forest.snapshot;
+
+import org.bsdro.forest.ab.ABTree;
+import org.bsdro.forest.avl.AVLTree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned binary snapshot of a sorted key set, shared by {@link ABTree} and {@link AVLTree}.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE} byte header: magic, version, key count, keys per block, length of
+ * the block data, CRC32 of everything after the header and CRC32 of the header itself. The keys follow in blocks of
+ * {@value #BLOCK_KEYS}, each the varint gaps between consecutive keys after the first, and the file ends with an
+ * index holding the first key and data offset of every block. Loading maps the file, so it reads about as fast as
+ * the disk delivers it, and the index lets {@link SnapshotView} decode a single block per lookup. Loading a tree
+ * verifies both checksums.
+ */
+public final class TreeSnapshot {
+    static final int MAGIC = 0x46535350; // "FSSP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 28;
+    static final int BLOCK_KEYS = 128;
+    static final int INDEX_ENTRY_SIZE = 8; // first key, offset in the block data
+
+    private TreeSnapshot() {
+    }
+
+    /**
+     * Writes the keys of the tree to {@code file}, replacing it atomically once the snapshot is on disk.
+     */
+    public static void write(ABTree tree, Path file) {
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            tree.forEach(writer);
+            writer.commit();
+        }
+    }
+
+    public static void write(AVLTree tree, Path file) {
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            tree.forEach(writer);
+            writer.commit();
+        }
+    }
+
+    /**
+     * Builds an (a,b)-tree from the snapshot with {@link ABTree#bulkLoad}, decoding the keys straight from the
+     * mapped file.
+     *
+     * @throws IllegalStateException if the file is not an intact snapshot
+     */
+    public static ABTree loadABTree(Path file, int a, int b) {
+        ABTree tree = new ABTree(a, b);
+        tree.bulkLoad(open(file).verify().iterator());
+        return tree;
+    }
+
+    /**
+     * Builds an AVL tree from the snapshot with {@link AVLTree#fromSorted(int[])}.
+     *
+     * @throws IllegalStateException if the file is not an intact snapshot
+     */
+    public static AVLTree loadAVLTree(Path file) {
+        return AVLTree.fromSorted(open(file).verify().toArray());
+    }
+
+    /**
+     * Maps the snapshot and answers queries from the mapped file without building a tree. Only the header is
+     * checked here, see {@link SnapshotView#verify()} for the body.
+     *
+     * @throws IllegalStateException if the file is not a snapshot or its header is damaged
+     */
+    public static SnapshotView open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IllegalStateException("Snapshot too large: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SnapshotView(buffer, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
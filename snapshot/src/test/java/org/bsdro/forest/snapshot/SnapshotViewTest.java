@@ -0,0 +1,103 @@
+package org.bsdro.forest.snapshot;
+
+import junit.framework.TestCase;
+import org.bsdro.forest.avl.AVLTree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+/**
+ * Test class for queries on a mapped snapshot
+ */
+public class SnapshotViewTest extends TestCase {
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("snapshot-view", ".snapshot");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    /**
+     * Test lookups of present and absent keys, in and between blocks
+     */
+    public void testContains() {
+        int[] keys = randomKeys(10 * TreeSnapshot.BLOCK_KEYS + 17, 3);
+        TreeSnapshot.write(AVLTree.fromSorted(keys), file);
+        SnapshotView view = TreeSnapshot.open(file);
+        assertEquals(keys.length, view.size());
+        for (int key : keys) {
+            assertTrue("contains(" + key + ")", view.contains(key));
+            if (Arrays.binarySearch(keys, key + 1) < 0) {
+                assertFalse("contains(" + (key + 1) + ")", view.contains(key + 1));
+            }
+        }
+        assertFalse(view.contains(keys[0] - 1));
+        assertFalse(view.contains(Integer.MIN_VALUE));
+        assertFalse(view.contains(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Test that the iterator returns every key in order and then stops
+     */
+    public void testIterator() {
+        int[] keys = randomKeys(3 * TreeSnapshot.BLOCK_KEYS, 5);
+        TreeSnapshot.write(AVLTree.fromSorted(keys), file);
+        PrimitiveIterator.OfInt iterator = TreeSnapshot.open(file).iterator();
+        for (int key : keys) {
+            assertTrue(iterator.hasNext());
+            assertEquals(key, iterator.nextInt());
+        }
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.nextInt();
+            fail("Should throw NoSuchElementException past the last key");
+        } catch (NoSuchElementException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Test that decoding a snapshot large enough to be split across the fork/join pool keeps every key in place
+     */
+    public void testToArrayInParallel() {
+        int[] keys = randomKeys(4 * SnapshotView.PARALLEL_BLOCKS * TreeSnapshot.BLOCK_KEYS + 5, 9);
+        TreeSnapshot.write(AVLTree.fromSorted(keys), file);
+        assertTrue(Arrays.equals(keys, TreeSnapshot.open(file).toArray()));
+    }
+
+    /**
+     * Test that opening a view only checks the header while verify() rejects a damaged body
+     */
+    public void testVerifyChecksBody() throws IOException {
+        int[] keys = randomKeys(2 * TreeSnapshot.BLOCK_KEYS, 11);
+        TreeSnapshot.write(AVLTree.fromSorted(keys), file);
+        assertEquals(keys.length, TreeSnapshot.open(file).verify().size());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        SnapshotView view = TreeSnapshot.open(file);
+        assertEquals(keys.length, view.size());
+        try {
+            view.verify();
+            fail("Should throw IllegalStateException for a damaged body");
+        } catch (IllegalStateException e) {
+            // Expected exception
+        }
+    }
+
+    private static int[] randomKeys(int count, long seed) {
+        Random random = new Random(seed);
+        return random.ints(2 * count, -1_000_000, 1_000_000).distinct().limit(count).sorted().toArray();
+    }
+}
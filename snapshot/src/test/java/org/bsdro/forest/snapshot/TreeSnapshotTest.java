@@ -0,0 +1,156 @@
+package org.bsdro.forest.snapshot;
+
+import junit.framework.TestCase;
+import org.bsdro.forest.ab.ABTree;
+import org.bsdro.forest.avl.AVLTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Test class for writing and loading tree snapshots
+ */
+public class TreeSnapshotTest extends TestCase {
+
+    private Path directory;
+    private Path file;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("tree-snapshot");
+        file = directory.resolve("keys.snapshot");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Test that an (a,b)-tree survives a snapshot round trip, also loaded as an AVL tree
+     */
+    public void testABTreeRoundTrip() {
+        ABTree tree = new ABTree(2, 4);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(21);
+        for (int i = 0; i < 5000; i++) {
+            // Wide gaps and both signs, so varints of every length show up
+            int key = random.nextInt() >> random.nextInt(32);
+            tree.insert(key);
+            expected.add(key);
+        }
+        TreeSnapshot.write(tree, file);
+        assertEquals(new ArrayList<>(expected), keys(TreeSnapshot.loadABTree(file, 3, 8)));
+        assertEquals(new ArrayList<>(expected), keys(TreeSnapshot.loadAVLTree(file)));
+    }
+
+    /**
+     * Test that an AVL tree survives a snapshot round trip, including the extreme keys
+     */
+    public void testAVLTreeRoundTrip() {
+        AVLTree tree = new AVLTree();
+        List<Integer> expected = new ArrayList<>();
+        tree.insert(Integer.MIN_VALUE);
+        expected.add(Integer.MIN_VALUE);
+        for (int key = -1000; key < 1000; key += 3) {
+            tree.insert(key);
+            expected.add(key);
+        }
+        tree.insert(Integer.MAX_VALUE);
+        expected.add(Integer.MAX_VALUE);
+        TreeSnapshot.write(tree, file);
+        AVLTree loaded = TreeSnapshot.loadAVLTree(file);
+        assertEquals(expected.size(), loaded.size());
+        assertEquals(expected, keys(loaded));
+    }
+
+    /**
+     * Test that empty trees can be written and loaded
+     */
+    public void testEmptyTree() {
+        TreeSnapshot.write(new AVLTree(), file);
+        assertEquals(0, TreeSnapshot.loadAVLTree(file).size());
+        assertTrue(keys(TreeSnapshot.loadABTree(file, 2, 4)).isEmpty());
+        assertEquals(0, TreeSnapshot.open(file).size());
+    }
+
+    /**
+     * Test that a new snapshot replaces the old one and leaves no temporary file behind
+     */
+    public void testOverwrite() throws IOException {
+        AVLTree tree = AVLTree.fromSorted(new int[]{1, 2, 3});
+        TreeSnapshot.write(tree, file);
+        tree.delete(2);
+        TreeSnapshot.write(tree, file);
+        assertEquals(List.of(1, 3), keys(TreeSnapshot.loadAVLTree(file)));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                assertEquals(file, path);
+            }
+        }
+    }
+
+    /**
+     * Test that flipped bytes, a truncated file and a foreign file are all rejected
+     */
+    public void testDamagedSnapshotIsRejected() throws IOException {
+        int[] keys = new int[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 7 * i;
+        }
+        TreeSnapshot.write(AVLTree.fromSorted(keys), file);
+        byte[] intact = Files.readAllBytes(file);
+
+        for (int offset : new int[]{9, TreeSnapshot.HEADER_SIZE + 50, intact.length - 1}) {
+            Files.write(file, intact);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{(byte) (intact[offset] ^ 0x10)}), offset);
+            }
+            assertRejected(file);
+        }
+
+        Files.write(file, intact);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(intact.length - 8);
+        }
+        assertRejected(file);
+
+        Files.write(file, new byte[100]);
+        assertRejected(file);
+    }
+
+    private static void assertRejected(Path file) {
+        try {
+            TreeSnapshot.loadAVLTree(file);
+            fail("Should throw IllegalStateException for a damaged snapshot");
+        } catch (IllegalStateException e) {
+            // Expected exception
+        }
+    }
+
+    private static List<Integer> keys(ABTree tree) {
+        List<Integer> keys = new ArrayList<>();
+        tree.forEach(keys::add);
+        return keys;
+    }
+
+    private static List<Integer> keys(AVLTree tree) {
+        List<Integer> keys = new ArrayList<>();
+        tree.forEach(keys::add);
+        return keys;
+    }
+}